@@ -1,12 +1,15 @@
 package smartparking;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
-import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import smartparking.model.ParkingLot;
+import smartparking.observer.ObserverEventSink;
+import smartparking.observer.SpotEventBus;
+import smartparking.observer.SpotFilter;
 import smartparking.observers.ActivityLogObserver;
 import smartparking.observers.MobileNotifierObserver;
 import smartparking.observers.SecurityModuleObserver;
@@ -15,6 +18,7 @@ import smartparking.observers.WebDashboardObserver;
 import smartparking.observers.WebSocketObserver;
 import smartparking.service.ParkingActivityLog;
 import smartparking.service.ParkingService;
+import smartparking.web.ParkingDeltaPublisher;
 
 @SpringBootApplication
 @EnableScheduling
@@ -25,24 +29,30 @@ public class SmartParkingApplication {
     }
 
     @Bean
-    CommandLineRunner init(ParkingService parkingService, SimpMessagingTemplate messagingTemplate, ParkingActivityLog activityLog) {
+    CommandLineRunner init(ParkingService parkingService, ParkingDeltaPublisher deltaPublisher, ParkingActivityLog activityLog,
+                           SpotEventBus eventBus, ObserverEventSink eventSink,
+                           @Value("${parking.websocket.coalesce-window-ms:250}") long coalesceWindowMs) {
         return args -> {
             ParkingLot parkingLot = parkingService.getParkingLot();
 
             // Observers for UI, notifications and metrics
-            WebDashboardObserver webDashboard = new WebDashboardObserver(parkingLot);
-            SecurityModuleObserver securityModule = new SecurityModuleObserver();
-            StatisticsModuleObserver statisticsModule = new StatisticsModuleObserver(parkingLot);
-            MobileNotifierObserver mobileNotifier = new MobileNotifierObserver(3);
-            WebSocketObserver webSocketObserver = new WebSocketObserver(messagingTemplate);
+            WebDashboardObserver webDashboard = new WebDashboardObserver(parkingLot, eventSink);
+            SecurityModuleObserver securityModule = new SecurityModuleObserver(eventSink);
+            StatisticsModuleObserver statisticsModule = new StatisticsModuleObserver(parkingLot, eventSink);
+            int mobileSpotId = 3;
+            MobileNotifierObserver mobileNotifier = new MobileNotifierObserver(mobileSpotId, eventSink);
+            WebSocketObserver webSocketObserver = new WebSocketObserver(deltaPublisher, parkingLot, coalesceWindowMs);
             ActivityLogObserver activityLogObserver = new ActivityLogObserver(activityLog);
 
-            parkingLot.attachObserverToAllSpots(webDashboard);
-            parkingLot.attachObserverToAllSpots(securityModule);
-            parkingLot.attachObserverToAllSpots(statisticsModule);
-            parkingLot.attachObserverToAllSpots(mobileNotifier);
-            parkingLot.attachObserverToAllSpots(webSocketObserver);
-            parkingLot.attachObserverToAllSpots(activityLogObserver);
+            // Las plazas solo notifican al bus; cada observador consume en su propio hilo
+            parkingLot.attachObserverToAllSpots(eventBus);
+            eventBus.subscribe("web-dashboard", webDashboard);
+            eventBus.subscribe("security", securityModule);
+            eventBus.subscribe("statistics", statisticsModule);
+            // Solo le llegan los cambios de su plaza
+            eventBus.subscribe("mobile", mobileNotifier, SpotFilter.spots(mobileSpotId));
+            eventBus.subscribe("websocket", webSocketObserver);
+            eventBus.subscribe("activity-log", activityLogObserver);
 
             System.out.println("\n========================================");
             System.out.println("SmartParking Live - Servidor iniciado");
@@ -0,0 +1,58 @@
+package smartparking.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import smartparking.model.ParkingSpot;
+import smartparking.service.ParkingLotRegistry;
+import smartparking.service.ParkingService;
+
+import java.util.List;
+
+/**
+ * Vista a nivel de plaza de cualquier carpark del feed, sin cambiar el parking activo.
+ */
+@RestController
+@RequestMapping("/api/parking/carparks")
+@CrossOrigin(origins = "*")
+public class CarparkLotController {
+
+    private final ParkingLotRegistry registry;
+
+    public CarparkLotController(ParkingLotRegistry registry) {
+        this.registry = registry;
+    }
+
+    @GetMapping("/{carparkId}/spots")
+    public ResponseEntity<List<ParkingSpot>> getSpots(@PathVariable String carparkId) {
+        return registry.lotFor(carparkId)
+                .map(lot -> ResponseEntity.ok(lot.getSpots()))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{carparkId}/spots/{spotId}")
+    public ResponseEntity<ParkingSpot> getSpot(@PathVariable String carparkId, @PathVariable int spotId) {
+        return registry.lotFor(carparkId)
+                .flatMap(lot -> lot.findSpotById(spotId))
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{carparkId}/statistics")
+    public ResponseEntity<ParkingService.ParkingStatistics> getStatistics(@PathVariable String carparkId) {
+        return registry.lotFor(carparkId)
+                .map(lot -> ResponseEntity.ok(ParkingService.ParkingStatistics.of(lot)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Parkings materializados, memoria estimada y expulsiones.
+     */
+    @GetMapping("/registry")
+    public ResponseEntity<ParkingLotRegistry.RegistryStats> getRegistryStats() {
+        return ResponseEntity.ok(registry.getStats());
+    }
+}
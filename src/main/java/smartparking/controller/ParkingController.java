@@ -1,11 +1,16 @@
 package smartparking.controller;
 
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -13,22 +18,20 @@ import smartparking.integration.CarparkSnapshot;
 import smartparking.model.ParkingEvent;
 import smartparking.model.ParkingSpot;
 import smartparking.model.SpotStatus;
+import smartparking.service.CarparkAvailability;
 import smartparking.service.MonitoringService;
 import smartparking.service.ParkingActivityLog;
 import smartparking.service.ParkingHistoryService;
 import smartparking.service.ParkingService;
 import smartparking.service.PricingService;
+import smartparking.service.RenderedJsonCache;
 import smartparking.service.RealTimeParkingUpdater;
 import smartparking.pricing.PricingQuote;
-import smartparking.repository.CarparkRepository;
-import smartparking.model.Carpark;
 
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 /**
  * Controlador REST para el sistema de parking.
@@ -38,13 +41,14 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "*")
 public class ParkingController {
 
+    static final String HISTORY_CARPARK_HEADER = "X-Carpark-Id";
+
     private final ParkingService parkingService;
     private final RealTimeParkingUpdater realTimeParkingUpdater;
     private final ParkingActivityLog parkingActivityLog;
     private final MonitoringService monitoringService;
     private final PricingService pricingService;
     private final ParkingHistoryService parkingHistoryService;
-    private final CarparkRepository carparkRepository;
 
     public ParkingController(
             ParkingService parkingService,
@@ -52,15 +56,13 @@ public class ParkingController {
             ParkingActivityLog parkingActivityLog,
             MonitoringService monitoringService,
             PricingService pricingService,
-            ParkingHistoryService parkingHistoryService,
-            CarparkRepository carparkRepository) {
+            ParkingHistoryService parkingHistoryService) {
         this.parkingService = parkingService;
         this.realTimeParkingUpdater = realTimeParkingUpdater;
         this.parkingActivityLog = parkingActivityLog;
         this.monitoringService = monitoringService;
         this.pricingService = pricingService;
         this.parkingHistoryService = parkingHistoryService;
-        this.carparkRepository = carparkRepository;
     }
 
     /**
@@ -120,11 +122,12 @@ public class ParkingController {
      */
     @GetMapping("/feed")
     public ResponseEntity<Map<String, Object>> getFeedSnapshot() {
-        Optional<CarparkSnapshot> snapshot = realTimeParkingUpdater.getLastSnapshot();
+        Optional<CarparkSnapshot> snapshot = realTimeParkingUpdater.getActiveSnapshot();
+        Optional<CarparkAvailability> availability = realTimeParkingUpdater.getActiveAvailability();
         return ResponseEntity.ok(
                 snapshot.<Map<String, Object>>map(s -> {
-                    int total = s.types().stream().mapToInt(t -> t.totalLots()).sum();
-                    int available = s.types().stream().mapToInt(t -> t.availableLots()).sum();
+                    int total = availability.map(CarparkAvailability::totalLots).orElse(0);
+                    int available = availability.map(CarparkAvailability::availableLots).orElse(0);
                     return Map.of(
                             "carparkNumber", s.carparkNumber(),
                             "availableLots", available,
@@ -138,23 +141,14 @@ public class ParkingController {
                         "source", "data.gov.sg/transport/carpark-availability")));
     }
 
+    /**
+     * Lista de parkings con metadatos y su disponibilidad, pre-serializada por versión del feed.
+     */
     @GetMapping("/list")
-    public List<Map<String, Object>> listAllCarparks() {
-        // Filter by parkings present in the database
-        Set<String> allowedIds = carparkRepository.findAll().stream()
-                .map(Carpark::getCarparkNumber)
-                .collect(Collectors.toSet());
-
-        return realTimeParkingUpdater.getAllSnapshots().stream()
-                .filter(s -> allowedIds.contains(s.carparkNumber()))
-                .map(s -> {
-                    Map<String, Object> map = new java.util.HashMap<>();
-                    map.put("id", s.carparkNumber());
-                    map.put("totalLots", s.types().stream().mapToInt(t -> t.totalLots()).sum());
-                    map.put("availableLots", s.types().stream().mapToInt(t -> t.availableLots()).sum());
-                    return map;
-                })
-                .collect(Collectors.toList());
+    public ResponseEntity<byte[]> listAllCarparks(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return preRendered(realTimeParkingUpdater.getCarparkListPayload(), ifNoneMatch, acceptEncoding);
     }
 
     @org.springframework.web.bind.annotation.PostMapping("/select/{id}")
@@ -200,15 +194,76 @@ public class ParkingController {
      * Obtiene el historial de ocupación.
      */
     @GetMapping("/history")
+    @CrossOrigin(exposedHeaders = HISTORY_CARPARK_HEADER)
     public ResponseEntity<List<ParkingHistoryService.HistoryPoint>> getHistory() {
-        return ResponseEntity.ok(parkingHistoryService.getHistory());
+        // Para que el cliente ignore los puntos de /topic/parking-history de otro carpark
+        return ResponseEntity.ok()
+                .header(HISTORY_CARPARK_HEADER, parkingHistoryService.getActiveCarparkId())
+                .body(parkingHistoryService.getHistory());
     }
 
     /**
      * Devuelve datos para el mapa: ubicación (lat/lon) y estado actual.
+     * El JSON se serializa una vez por versión del feed; responde 304 si el ETag no ha cambiado.
      */
     @GetMapping("/map-data")
-    public ResponseEntity<List<Map<String, Object>>> getMapData() {
-        return ResponseEntity.ok(realTimeParkingUpdater.getCachedMapData());
+    public ResponseEntity<byte[]> getMapData(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return preRendered(realTimeParkingUpdater.getMapDataPayload(), ifNoneMatch, acceptEncoding);
+    }
+
+    private ResponseEntity<byte[]> preRendered(RenderedJsonCache.Rendered payload, String ifNoneMatch, String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        if (payload.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(payload.etag(gzip))
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(payload.etag(gzip))
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.gzip());
+        }
+        return response.body(payload.json());
+    }
+
+    /**
+     * Interpreta Accept-Encoding con sus pesos: gzip se sirve si tiene q &gt; 0, o si no aparece y
+     * {@code *} lo tiene. {@code gzip;q=0} lo rechaza explícitamente.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return false;
+        }
+        double gzip = -1;
+        double any = -1;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.length() > 2 && parameter.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = Math.max(gzip, quality);
+            } else if (coding.equals("*")) {
+                any = Math.max(any, quality);
+            }
+        }
+        return gzip >= 0 ? gzip > 0 : any > 0;
     }
 }
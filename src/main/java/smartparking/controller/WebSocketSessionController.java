@@ -0,0 +1,45 @@
+package smartparking.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import smartparking.web.SessionOutboundQueues;
+import smartparking.web.ViewportSubscriptions;
+
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Métricas de las sesiones WebSocket: colas de salida y suscripciones por área del mapa.
+ */
+@RestController
+@RequestMapping("/api/parking/websocket")
+@CrossOrigin(origins = "*")
+public class WebSocketSessionController {
+
+    private final SessionOutboundQueues outboundQueues;
+    private final ViewportSubscriptions viewports;
+
+    public WebSocketSessionController(SessionOutboundQueues outboundQueues, ViewportSubscriptions viewports) {
+        this.outboundQueues = outboundQueues;
+        this.viewports = viewports;
+    }
+
+    /**
+     * Sesiones abiertas, las más atrasadas primero.
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<List<SessionOutboundQueues.SessionStats>> getSessions() {
+        List<SessionOutboundQueues.SessionStats> stats = outboundQueues.getSessionStats();
+        stats.sort(Comparator.comparingInt(SessionOutboundQueues.SessionStats::queued).reversed()
+                .thenComparing(Comparator.comparingLong(SessionOutboundQueues.SessionStats::dropped).reversed()));
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/viewports")
+    public ResponseEntity<ViewportSubscriptions.ViewportStats> getViewports() {
+        return ResponseEntity.ok(viewports.getStats());
+    }
+}
@@ -0,0 +1,266 @@
+package smartparking.integration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parser en streaming del feed de disponibilidad de data.gov.sg.
+ * Recorre los tokens una sola vez y construye directamente los {@link CarparkSnapshot},
+ * sin árboles intermedios ni conversiones String -> int.
+ */
+final class CarparkFeedParser {
+
+    /**
+     * El feed publica update_datetime en hora local de Singapur y sin offset.
+     */
+    private static final ZoneOffset FEED_OFFSET = ZoneOffset.ofHours(8);
+
+    private static final String[] SINGLE_CHAR_CODES = new String[128];
+
+    static {
+        for (char c = 'A'; c <= 'Z'; c++) {
+            SINGLE_CHAR_CODES[c] = String.valueOf(c);
+        }
+    }
+
+    private final JsonFactory jsonFactory;
+
+    CarparkFeedParser(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * Lee el primer elemento de "items" y devuelve sus carparks.
+     */
+    List<CarparkSnapshot> parse(InputStream in) throws IOException {
+        try (JsonParser p = jsonFactory.createParser(in)) {
+            return parseRoot(p);
+        }
+    }
+
+    List<CarparkSnapshot> parse(byte[] payload) throws IOException {
+        try (JsonParser p = jsonFactory.createParser(payload)) {
+            return parseRoot(p);
+        }
+    }
+
+    private List<CarparkSnapshot> parseRoot(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            return List.of();
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                return readFirstItem(p);
+            }
+            p.skipChildren();
+        }
+        return List.of();
+    }
+
+    private List<CarparkSnapshot> readFirstItem(JsonParser p) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            return List.of();
+        }
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            if ("carpark_data".equals(field) && value == JsonToken.START_ARRAY) {
+                return readCarparks(p);
+            }
+            p.skipChildren();
+        }
+        return List.of();
+    }
+
+    private List<CarparkSnapshot> readCarparks(JsonParser p) throws IOException {
+        List<CarparkSnapshot> result = new ArrayList<>(2048);
+        TypeBuffer buffer = new TypeBuffer();
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+            CarparkSnapshot snapshot = readCarpark(p, buffer);
+            if (snapshot != null) {
+                result.add(snapshot);
+            }
+        }
+        return result;
+    }
+
+    private CarparkSnapshot readCarpark(JsonParser p, TypeBuffer buffer) throws IOException {
+        String carparkNumber = null;
+        Instant updatedAt = null;
+        List<CarparkSnapshot.CarparkTypeInfo> types = List.of();
+
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken value = p.nextToken();
+            switch (field) {
+                case "carpark_number" -> carparkNumber = value == JsonToken.VALUE_STRING ? p.getText() : null;
+                case "update_datetime" -> updatedAt = value == JsonToken.VALUE_STRING ? readInstant(p) : null;
+                case "carpark_info" -> {
+                    if (value == JsonToken.START_ARRAY) {
+                        types = readTypes(p, buffer);
+                    } else {
+                        p.skipChildren();
+                    }
+                }
+                default -> p.skipChildren();
+            }
+        }
+
+        if (carparkNumber == null) {
+            return null;
+        }
+        return new CarparkSnapshot(carparkNumber, updatedAt != null ? updatedAt : Instant.now(), types);
+    }
+
+    private List<CarparkSnapshot.CarparkTypeInfo> readTypes(JsonParser p, TypeBuffer buffer) throws IOException {
+        CarparkSnapshot.CarparkTypeInfo[] typeScratch = buffer.types;
+        int count = 0;
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+            int total = 0;
+            int available = 0;
+            String lotType = null;
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                JsonToken value = p.nextToken();
+                switch (field) {
+                    case "total_lots" -> total = readInt(p, value);
+                    case "lots_available" -> available = readInt(p, value);
+                    case "lot_type" -> lotType = value == JsonToken.VALUE_STRING ? readCode(p) : null;
+                    default -> p.skipChildren();
+                }
+            }
+            if (count == typeScratch.length) {
+                typeScratch = Arrays.copyOf(typeScratch, count * 2);
+                buffer.types = typeScratch;
+            }
+            typeScratch[count++] = new CarparkSnapshot.CarparkTypeInfo(lotType, total, available);
+        }
+
+        List<CarparkSnapshot.CarparkTypeInfo> types = switch (count) {
+            case 0 -> List.of();
+            case 1 -> List.of(typeScratch[0]);
+            case 2 -> List.of(typeScratch[0], typeScratch[1]);
+            default -> List.of(Arrays.copyOf(typeScratch, count));
+        };
+        Arrays.fill(typeScratch, 0, count, null);
+        return types;
+    }
+
+    /**
+     * Los contadores llegan como cadenas ("105"); se leen directamente del buffer de caracteres.
+     * Un valor no numérico cuenta como 0, igual que hacía el mapeo anterior.
+     */
+    private static int readInt(JsonParser p, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return p.getIntValue();
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            p.skipChildren();
+            return 0;
+        }
+        char[] buf = p.getTextCharacters();
+        int offset = p.getTextOffset();
+        int length = p.getTextLength();
+        if (length == 0 || length > 9) {
+            return 0;
+        }
+        int start = offset;
+        boolean negative = buf[start] == '-';
+        if (negative && length == 1) {
+            return 0;
+        }
+        if (negative) {
+            start++;
+        }
+        int value = 0;
+        for (int i = start; i < offset + length; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return 0;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private static String readCode(JsonParser p) throws IOException {
+        if (p.getTextLength() == 1) {
+            char c = p.getTextCharacters()[p.getTextOffset()];
+            if (c < SINGLE_CHAR_CODES.length && SINGLE_CHAR_CODES[c] != null) {
+                return SINGLE_CHAR_CODES[c];
+            }
+        }
+        return p.getText();
+    }
+
+    /**
+     * Interpreta "yyyy-MM-ddTHH:mm:ss" (hora de Singapur) sin crear Strings.
+     * Si el valor trae zona u otro formato se delega en java.time; si falla se usa la hora actual.
+     */
+    private static Instant readInstant(JsonParser p) throws IOException {
+        char[] buf = p.getTextCharacters();
+        int o = p.getTextOffset();
+        int length = p.getTextLength();
+
+        if (length == 19 && buf[o + 4] == '-' && buf[o + 7] == '-' && buf[o + 10] == 'T'
+                && buf[o + 13] == ':' && buf[o + 16] == ':') {
+            int year = digits(buf, o, 4);
+            int month = digits(buf, o + 5, 2);
+            int day = digits(buf, o + 8, 2);
+            int hour = digits(buf, o + 11, 2);
+            int minute = digits(buf, o + 14, 2);
+            int second = digits(buf, o + 17, 2);
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31
+                    && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                try {
+                    long epochDay = LocalDate.of(year, month, day).toEpochDay();
+                    long epochSecond = epochDay * 86_400 + hour * 3_600L + minute * 60L + second
+                            - FEED_OFFSET.getTotalSeconds();
+                    return Instant.ofEpochSecond(epochSecond);
+                } catch (DateTimeException ignored) {
+                    // Fecha imposible (p.ej. 31 de febrero): se trata como valor inválido
+                    return Instant.now();
+                }
+            }
+        }
+
+        try {
+            return OffsetDateTime.parse(p.getText()).toInstant();
+        } catch (DateTimeException e) {
+            return Instant.now();
+        }
+    }
+
+    private static int digits(char[] buf, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * Buffer reutilizable para los tipos de plaza de un carpark, uno por llamada a parse.
+     */
+    private static final class TypeBuffer {
+        private CarparkSnapshot.CarparkTypeInfo[] types = new CarparkSnapshot.CarparkTypeInfo[4];
+    }
+}
@@ -0,0 +1,28 @@
+package smartparking.integration;
+
+import java.util.List;
+
+/**
+ * Origen de datos de parkings: disponibilidad en tiempo real y metadatos.
+ * La implementación activa se elige con {@code parking.feed.source} (live o replay).
+ */
+public interface CarparkFeedSource {
+
+    /**
+     * Último ciclo de disponibilidad publicado. Lista vacía si no hay datos (fallo o fuera de servicio).
+     */
+    List<CarparkSnapshot> fetchAll();
+
+    /**
+     * Dataset completo de metadatos. Lista vacía si no se pudo obtener.
+     */
+    List<CarparkMetadata> fetchMetadata();
+
+    /**
+     * Indica si los datos son una grabación. Lo que sale de una grabación no debe acabar en el
+     * estado persistente del modo en vivo (caché de metadatos, base de datos, checkpoint).
+     */
+    default boolean isReplay() {
+        return false;
+    }
+}
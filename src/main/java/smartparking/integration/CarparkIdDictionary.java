@@ -0,0 +1,78 @@
+package smartparking.integration;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Diccionario que asigna a cada número de carpark ("HE12") un entero denso y estable
+ * durante la vida del proceso, para indexar arrays en lugar de mapas por String.
+ * Los ids no se persisten: dependen del orden en que se ven los carparks.
+ */
+@Component
+public class CarparkIdDictionary {
+
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[256];
+    private volatile int size;
+
+    /**
+     * Devuelve el id del carpark, asignando el siguiente libre si es la primera vez que aparece.
+     */
+    public int intern(String carparkNumber) {
+        Integer id = ids.get(carparkNumber);
+        if (id != null) {
+            return id;
+        }
+        return register(carparkNumber);
+    }
+
+    private synchronized int register(String carparkNumber) {
+        Integer existing = ids.get(carparkNumber);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        String[] current = names;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[id] = carparkNumber;
+        names = current;
+        ids.put(carparkNumber, id);
+        size = id + 1;
+        return id;
+    }
+
+    /**
+     * Id sin registrar nada nuevo; {@link #UNKNOWN} si el carpark no se ha visto nunca.
+     * Acepta minúsculas, ya que los números del feed están en mayúsculas.
+     */
+    public int idOf(String carparkNumber) {
+        if (carparkNumber == null) {
+            return UNKNOWN;
+        }
+        Integer id = ids.get(carparkNumber);
+        if (id == null) {
+            id = ids.get(carparkNumber.toUpperCase(Locale.ROOT));
+        }
+        return id != null ? id : UNKNOWN;
+    }
+
+    public String nameOf(int id) {
+        String[] current = names;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * Número de ids asignados; todos los ids válidos están en [0, size).
+     */
+    public int size() {
+        return size;
+    }
+}
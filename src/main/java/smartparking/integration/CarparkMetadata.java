@@ -16,5 +16,21 @@ public record CarparkMetadata(
     @JsonProperty("night_parking") String nightParking,
     @JsonProperty("car_park_decks") String carparkDecks,
     @JsonProperty("gantry_height") String gantryHeight,
-    @JsonProperty("car_park_basement") String carparkBasement
-) {}
+    @JsonProperty("car_park_basement") String carparkBasement,
+    @JsonProperty("latitude") Double latitude,
+    @JsonProperty("longitude") Double longitude
+) {
+
+    public boolean hasCoordinates() {
+        return latitude != null && longitude != null;
+    }
+
+    /**
+     * Copia con las coordenadas WGS84 ya calculadas a partir de x_coord/y_coord (SVY21).
+     */
+    public CarparkMetadata withCoordinates(double latitude, double longitude) {
+        return new CarparkMetadata(carparkNumber, address, xCoord, yCoord, carparkType, typeOfParkingSystem,
+                shortTermParking, freeParking, nightParking, carparkDecks, gantryHeight, carparkBasement,
+                latitude, longitude);
+    }
+}
@@ -0,0 +1,77 @@
+package smartparking.integration;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Caché local y versionada de los metadatos de parkings para arrancar sin esperar a la API.
+ */
+@Component
+public class CarparkMetadataCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CarparkMetadataCache.class);
+
+    /**
+     * Incrementar si cambia el formato de {@link CarparkMetadata}; las cachés antiguas se ignoran.
+     */
+    static final int FORMAT_VERSION = 2;
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+
+    public CarparkMetadataCache(
+            ObjectMapper objectMapper,
+            @Value("${parking.metadata.cache-file:carpark-metadata-cache.json}") String file
+    ) {
+        this.objectMapper = objectMapper;
+        this.file = Path.of(file);
+    }
+
+    public Optional<List<CarparkMetadata>> load() {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            CacheFile cache = objectMapper.readValue(file.toFile(), CacheFile.class);
+            if (cache.version() != FORMAT_VERSION || cache.records() == null || cache.records().isEmpty()) {
+                log.info("Metadata cache: ignoring {} (version {}, expected {})", file, cache.version(), FORMAT_VERSION);
+                return Optional.empty();
+            }
+            log.info("Metadata cache: {} records from {} (fetched at {})", cache.records().size(), file, cache.fetchedAt());
+            return Optional.of(cache.records());
+        } catch (IOException e) {
+            log.warn("Metadata cache: could not read {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Escribe en un fichero temporal y lo renombra para no dejar nunca una caché a medias.
+     */
+    public void store(List<CarparkMetadata> records) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            Path tmp = Files.createTempFile(parent, "carpark-metadata", ".tmp");
+            objectMapper.writeValue(tmp.toFile(), new CacheFile(FORMAT_VERSION, Instant.now().toString(), records));
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Metadata cache: could not write {}: {}", file, e.getMessage());
+        }
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record CacheFile(int version, String fetchedAt, List<CarparkMetadata> records) {}
+}
@@ -0,0 +1,159 @@
+package smartparking.integration;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Comparativa de asignación y throughput entre el mapeo por records (ruta anterior de fetchAll)
+ * y el parser en streaming. Uso: java smartparking.integration.FeedParserBenchmark [carparks] [iteraciones]
+ */
+public class FeedParserBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int carparks = args.length > 0 ? Integer.parseInt(args[0]) : 2200;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+
+        ObjectMapper mapper = new ObjectMapper();
+        CarparkFeedParser parser = new CarparkFeedParser(mapper.getFactory());
+        byte[] payload = buildPayload(carparks);
+
+        System.out.println("Payload: " + carparks + " carparks, " + payload.length / 1024 + " KiB, "
+                + iterations + " iteraciones");
+
+        // Comprobación de equivalencia antes de medir
+        List<CarparkSnapshot> legacy = parseLegacy(mapper, payload);
+        List<CarparkSnapshot> streaming = parser.parse(payload);
+        if (legacy.size() != streaming.size()) {
+            throw new IllegalStateException("Resultados distintos: " + legacy.size() + " vs " + streaming.size());
+        }
+        for (int i = 0; i < legacy.size(); i++) {
+            if (!legacy.get(i).carparkNumber().equals(streaming.get(i).carparkNumber())
+                    || !legacy.get(i).types().equals(streaming.get(i).types())) {
+                throw new IllegalStateException("Snapshot distinto en posición " + i);
+            }
+        }
+
+        for (int i = 0; i < iterations; i++) {
+            parseLegacy(mapper, payload);
+            parser.parse(payload);
+        }
+
+        report("records + mapToSnapshot", iterations, () -> parseLegacy(mapper, payload));
+        report("streaming JsonParser", iterations, () -> parser.parse(payload));
+    }
+
+    private static void report(String label, int iterations, ParseRun run) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += run.parse().size();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%-26s %8.3f ms/feed  %10.1f KiB/feed  %8.1f feeds/s  (%d)%n",
+                label,
+                elapsed / 1e6 / iterations,
+                allocated / 1024.0 / iterations,
+                iterations / (elapsed / 1e9),
+                sink);
+    }
+
+    private static List<CarparkSnapshot> parseLegacy(ObjectMapper mapper, byte[] payload) throws Exception {
+        LegacyResponse response = mapper.readValue(payload, LegacyResponse.class);
+        return response.items().get(0).carparkData().stream()
+                .map(data -> new CarparkSnapshot(
+                        data.carparkNumber(),
+                        parseInstant(data.updateDateTime()),
+                        data.carparkInfo().stream()
+                                .map(info -> new CarparkSnapshot.CarparkTypeInfo(
+                                        info.lotType(),
+                                        toInt(info.totalLots()),
+                                        toInt(info.lotsAvailable())))
+                                .toList()))
+                .toList();
+    }
+
+    private static int toInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Instant parseInstant(String value) {
+        try {
+            return Instant.parse(value);
+        } catch (Exception e) {
+            return Instant.now();
+        }
+    }
+
+    private static byte[] buildPayload(int carparks) {
+        Random random = new Random(42);
+        String[] lotTypes = {"C", "Y", "H"};
+        StringBuilder sb = new StringBuilder(carparks * 180);
+        sb.append("{\"items\":[{\"timestamp\":\"2024-06-01T10:45:27+08:00\",\"carpark_data\":[");
+        for (int i = 0; i < carparks; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"carpark_info\":[");
+            int types = 1 + random.nextInt(2);
+            for (int t = 0; t < types; t++) {
+                int total = 20 + random.nextInt(900);
+                if (t > 0) {
+                    sb.append(',');
+                }
+                sb.append("{\"total_lots\":\"").append(total)
+                        .append("\",\"lot_type\":\"").append(lotTypes[t])
+                        .append("\",\"lots_available\":\"").append(random.nextInt(total + 1))
+                        .append("\"}");
+            }
+            sb.append("],\"carpark_number\":\"C").append(i)
+                    .append("\",\"update_datetime\":\"2024-06-01T10:4").append(random.nextInt(10))
+                    .append(":").append(10 + random.nextInt(50)).append("\"}");
+        }
+        sb.append("]}]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @FunctionalInterface
+    private interface ParseRun {
+        List<CarparkSnapshot> parse() throws Exception;
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record LegacyResponse(List<LegacyItem> items) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record LegacyItem(@JsonProperty("carpark_data") List<LegacyCarparkData> carparkData) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record LegacyCarparkData(
+            @JsonProperty("carpark_number") String carparkNumber,
+            @JsonProperty("update_datetime") String updateDateTime,
+            String status,
+            @JsonProperty("carpark_info") List<LegacyCarparkInfo> carparkInfo
+    ) {}
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    private record LegacyCarparkInfo(
+            @JsonProperty("total_lots") String totalLots,
+            @JsonProperty("lots_available") String lotsAvailable,
+            @JsonProperty("lot_type") String lotType
+    ) {}
+}
@@ -0,0 +1,195 @@
+package smartparking.integration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Reproduce un feed grabado desde disco, sin red.
+ *
+ * El directorio contiene {@code metadata.json} (respuesta CKAN, la caché local o un array de registros)
+ * y un fichero JSON por ciclo de disponibilidad con la respuesta original de data.gov.sg,
+ * reproducidos en orden de nombre. El instante de cada ciclo es su update_datetime más reciente.
+ *
+ * Con {@code speed} 1 se sirve en tiempo real, con N a N veces esa velocidad y con 0 cada llamada
+ * avanza un ciclo (lo más rápido que sondee el updater; desactivar {@code parking.feed.poll.adaptive}
+ * y bajar {@code parking.update-interval-ms}).
+ * Como la API real, entre ciclos se devuelve de nuevo el último publicado.
+ *
+ * Los datos grabados no se persisten: el updater no escribe la caché de metadatos, la tabla de
+ * carparks ni el checkpoint mientras esta fuente está activa (ver {@link #isReplay}).
+ */
+@Component
+@ConditionalOnProperty(name = "parking.feed.source", havingValue = "replay")
+public class ReplayCarparkFeedSource implements CarparkFeedSource {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplayCarparkFeedSource.class);
+    private static final String METADATA_FILE = "metadata.json";
+
+    private final ObjectMapper objectMapper;
+    private final CarparkFeedParser feedParser;
+    private final Path directory;
+    private final double speed;
+    private final boolean loop;
+
+    private final List<Path> frames;
+    private final long[] frameTimes;
+
+    // Duración de una vuelta en tiempo de grabación: del primer ciclo al último más un intervalo medio
+    private final long period;
+
+    // Estado del reloj de reproducción; solo lo toca fetchAll()
+    private long startNanos = -1;
+    private long served = -1;
+    private List<CarparkSnapshot> current = List.of();
+
+    public ReplayCarparkFeedSource(
+            ObjectMapper objectMapper,
+            @Value("${parking.feed.replay.dir:feed-recording}") String directory,
+            @Value("${parking.feed.replay.speed:1}") double speed,
+            @Value("${parking.feed.replay.loop:false}") boolean loop
+    ) {
+        this.objectMapper = objectMapper;
+        this.feedParser = new CarparkFeedParser(objectMapper.getFactory());
+        this.directory = Path.of(directory);
+        this.speed = Math.max(0, speed);
+        this.loop = loop;
+        this.frames = listFrames(this.directory);
+        this.frameTimes = new long[frames.size()];
+        for (int i = 0; i < frameTimes.length; i++) {
+            frameTimes[i] = latestUpdate(parseFrame(i));
+        }
+        long span = frameTimes.length > 1 ? Math.max(0, frameTimes[frameTimes.length - 1] - frameTimes[0]) : 0;
+        long gap = frameTimes.length > 1 && span > 0 ? span / (frameTimes.length - 1) : 60_000L;
+        this.period = span + gap;
+        log.info("Replay: {} ciclos en {} (velocidad {}, loop {})", frames.size(), this.directory,
+                this.speed == 0 ? "máxima" : this.speed + "x", loop);
+    }
+
+    private static List<Path> listFrames(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(Files::isRegularFile)
+                    .filter(p -> p.getFileName().toString().endsWith(".json"))
+                    .filter(p -> !p.getFileName().toString().equals(METADATA_FILE))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo leer la grabación en " + directory, e);
+        }
+    }
+
+    private List<CarparkSnapshot> parseFrame(int index) {
+        try (InputStream in = Files.newInputStream(frames.get(index))) {
+            return feedParser.parse(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ciclo grabado ilegible: " + frames.get(index), e);
+        }
+    }
+
+    private static long latestUpdate(List<CarparkSnapshot> snapshots) {
+        long latest = 0;
+        for (CarparkSnapshot snapshot : snapshots) {
+            latest = Math.max(latest, snapshot.updatedAt().toEpochMilli());
+        }
+        return latest;
+    }
+
+    @Override
+    public synchronized List<CarparkSnapshot> fetchAll() {
+        if (frames.isEmpty()) {
+            return List.of();
+        }
+        long due = dueFrame();
+        if (due != served) {
+            served = due;
+            int lap = (int) (due / frames.size());
+            int index = (int) (due % frames.size());
+            // Cada ciclo se vuelve a leer y parsear, como haría el cliente real
+            List<CarparkSnapshot> snapshots = parseFrame(index);
+            current = lap == 0 ? snapshots : shift(snapshots, lap * period);
+            if (!loop && index == frames.size() - 1) {
+                log.info("Replay: fin de la grabación tras {} ciclos", frames.size());
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Índice global (vuelta * ciclos + ciclo) visible según el reloj de reproducción.
+     */
+    private long dueFrame() {
+        int last = frames.size() - 1;
+        if (speed == 0) {
+            return loop || served < last ? served + 1 : last;
+        }
+
+        long now = System.nanoTime();
+        if (startNanos < 0) {
+            startNanos = now;
+        }
+        long elapsed = (long) ((now - startNanos) / 1_000_000L * speed);
+        long lap = elapsed / period;
+        if (!loop && lap > 0) {
+            return last;
+        }
+        long offset = elapsed % period;
+        int index = 0;
+        while (index < last && frameTimes[index + 1] - frameTimes[0] <= offset) {
+            index++;
+        }
+        return lap * frames.size() + index;
+    }
+
+    /**
+     * En las vueltas sucesivas se adelantan las marcas de tiempo para que el delta no las descarte como antiguas.
+     */
+    private static List<CarparkSnapshot> shift(List<CarparkSnapshot> snapshots, long millis) {
+        List<CarparkSnapshot> shifted = new ArrayList<>(snapshots.size());
+        for (CarparkSnapshot s : snapshots) {
+            shifted.add(new CarparkSnapshot(s.carparkNumber(), s.updatedAt().plusMillis(millis), s.types()));
+        }
+        return shifted;
+    }
+
+    @Override
+    public boolean isReplay() {
+        return true;
+    }
+
+    @Override
+    public List<CarparkMetadata> fetchMetadata() {
+        Path file = directory.resolve(METADATA_FILE);
+        if (!Files.isRegularFile(file)) {
+            log.warn("Replay: {} no existe, sin metadatos", file);
+            return List.of();
+        }
+        try {
+            JsonNode root = objectMapper.readTree(file.toFile());
+            JsonNode records = root.isArray() ? root
+                    : root.has("result") ? root.path("result").path("records")
+                    : root.path("records");
+            List<CarparkMetadata> metadata = new ArrayList<>(records.size());
+            for (JsonNode record : records) {
+                metadata.add(objectMapper.treeToValue(record, CarparkMetadata.class));
+            }
+            return metadata;
+        } catch (IOException e) {
+            log.warn("Replay: no se pudieron leer los metadatos de {}: {}", file, e.getMessage());
+            return List.of();
+        }
+    }
+}
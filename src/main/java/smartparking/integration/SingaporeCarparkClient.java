@@ -1,132 +1,146 @@
 package smartparking.integration;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
-import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestClient;
 
-import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 @Component
-public class SingaporeCarparkClient {
+@ConditionalOnProperty(name = "parking.feed.source", havingValue = "live", matchIfMissing = true)
+public class SingaporeCarparkClient implements CarparkFeedSource {
 
     private static final Logger log = LoggerFactory.getLogger(SingaporeCarparkClient.class);
     private static final String ENDPOINT = "https://api.data.gov.sg/v1/transport/carpark-availability";
-    private static final String METADATA_ENDPOINT = "https://data.gov.sg/api/action/datastore_search?resource_id=139a3035-e624-4f56-b63f-89ae28d4ae4c&limit=200&q=";
+    private static final String METADATA_ENDPOINT = "https://data.gov.sg/api/action/datastore_search";
+    private static final String METADATA_RESOURCE_ID = "139a3035-e624-4f56-b63f-89ae28d4ae4c";
 
     private final RestClient restClient;
     private final RestClient metadataClient;
-
-    public SingaporeCarparkClient(RestClient.Builder restClientBuilder) {
+    private final CarparkFeedParser feedParser;
+    private final int metadataPageSize;
+    private final int metadataParallelism;
+
+    public SingaporeCarparkClient(
+            RestClient.Builder restClientBuilder,
+            ObjectMapper objectMapper,
+            @Value("${parking.metadata.page-size:500}") int metadataPageSize,
+            @Value("${parking.metadata.parallelism:4}") int metadataParallelism
+    ) {
         this.restClient = restClientBuilder.baseUrl(ENDPOINT).build();
         this.metadataClient = RestClient.create(METADATA_ENDPOINT);
+        this.feedParser = new CarparkFeedParser(objectMapper.getFactory());
+        this.metadataPageSize = Math.max(1, metadataPageSize);
+        this.metadataParallelism = Math.max(1, metadataParallelism);
     }
 
+    /**
+     * Descarga el dataset completo de metadatos. La primera página informa del total de
+     * registros y el resto se piden en paralelo con un pool acotado.
+     * Si alguna página falla se devuelve una lista vacía para no trabajar con datos truncados.
+     */
+    @Override
     public List<CarparkMetadata> fetchMetadata() {
+        ExecutorService executor = null;
         try {
-            CkanResponse response = metadataClient.get()
-                    .retrieve()
-                    .body(CkanResponse.class);
-
-            if (response == null || response.result() == null || response.result().records() == null) {
+            Result first = fetchMetadataPage(0);
+            if (first == null || first.records() == null) {
                 return List.of();
             }
 
-            return response.result().records();
-
-        } catch (Exception ex) {
-            log.warn("No se pudo obtener metadatos de parkings", ex);
-            return List.of();
-        }
-    }
-
-    public List<CarparkSnapshot> fetchAll() {
-        try {
-            CarparkAvailabilityResponse response = restClient.get()
-                    .retrieve()
-                    .body(CarparkAvailabilityResponse.class);
+            int total = first.total() != null ? first.total() : first.records().size();
+            if (first.records().size() >= total) {
+                return first.records();
+            }
 
-            if (response == null || response.items() == null || response.items().isEmpty()) {
-                return List.of();
+            int pages = (total + metadataPageSize - 1) / metadataPageSize;
+            executor = Executors.newFixedThreadPool(Math.min(metadataParallelism, pages - 1), runnable -> {
+                Thread thread = new Thread(runnable, "carpark-metadata-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            List<Future<Result>> pending = new ArrayList<>(pages - 1);
+            for (int page = 1; page < pages; page++) {
+                int offset = page * metadataPageSize;
+                pending.add(executor.submit(() -> fetchMetadataPage(offset)));
             }
 
-            List<CarparkData> data = response.items().get(0).carparkData();
-            if (data == null || data.isEmpty()) {
-                return List.of();
+            List<CarparkMetadata> records = new ArrayList<>(total);
+            records.addAll(first.records());
+            for (Future<Result> future : pending) {
+                Result page = future.get();
+                if (page == null || page.records() == null) {
+                    log.warn("Página de metadatos vacía, se descarta la descarga completa");
+                    return List.of();
+                }
+                records.addAll(page.records());
             }
 
-            return data.stream()
-                    .map(this::mapToSnapshot)
-                    .toList();
+            if (records.size() < total) {
+                log.warn("Metadatos incompletos: {} de {} registros", records.size(), total);
+            }
+            return records;
 
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return List.of();
         } catch (Exception ex) {
-            log.warn("No se pudo obtener disponibilidad en vivo: {}", ex.getMessage());
+            log.warn("No se pudo obtener metadatos de parkings", ex);
             return List.of();
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
     }
 
-    private CarparkSnapshot mapToSnapshot(CarparkData data) {
-        Instant updatedAt = parseInstant(data.updateDateTime());
-        List<CarparkSnapshot.CarparkTypeInfo> types = data.carparkInfo().stream()
-                .map(info -> new CarparkSnapshot.CarparkTypeInfo(
-                        info.lotType(),
-                        toInt(info.totalLots()),
-                        toInt(info.lotsAvailable())
-                ))
-                .toList();
-
-        return new CarparkSnapshot(
-                data.carparkNumber(),
-                updatedAt,
-                types
-        );
+    private Result fetchMetadataPage(int offset) {
+        CkanResponse response = metadataClient.get()
+                .uri(uri -> uri
+                        .queryParam("resource_id", METADATA_RESOURCE_ID)
+                        .queryParam("limit", metadataPageSize)
+                        .queryParam("offset", offset)
+                        .build())
+                .retrieve()
+                .body(CkanResponse.class);
+        return response != null ? response.result() : null;
     }
 
-    private int toInt(String value) {
+    /**
+     * Descarga el feed de disponibilidad y lo convierte en snapshots en una sola pasada
+     * sobre el cuerpo de la respuesta (ver {@link CarparkFeedParser}).
+     */
+    @Override
+    public List<CarparkSnapshot> fetchAll() {
         try {
-            return Integer.parseInt(value);
-        } catch (NumberFormatException e) {
-            return 0;
-        } catch (NullPointerException e) {
-            return 0;
-        }
-    }
+            List<CarparkSnapshot> snapshots = restClient.get()
+                    .exchange((request, response) -> {
+                        if (!response.getStatusCode().is2xxSuccessful()) {
+                            throw new IllegalStateException("HTTP " + response.getStatusCode().value());
+                        }
+                        return feedParser.parse(response.getBody());
+                    });
+            return snapshots != null ? snapshots : List.of();
 
-    private Instant parseInstant(String value) {
-        try {
-            return Instant.parse(value);
-        } catch (Exception e) {
-            return Instant.now();
+        } catch (Exception ex) {
+            log.warn("No se pudo obtener disponibilidad en vivo: {}", ex.getMessage());
+            return List.of();
         }
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record CarparkAvailabilityResponse(List<Item> items) {}
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record Item(@JsonProperty("carpark_data") List<CarparkData> carparkData) {}
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record CarparkData(
-            @JsonProperty("carpark_number") String carparkNumber,
-            @JsonProperty("update_datetime") String updateDateTime,
-            String status,
-            @JsonProperty("carpark_info") List<CarparkInfo> carparkInfo
-    ) {}
-
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private record CarparkInfo(
-            @JsonProperty("total_lots") String totalLots,
-            @JsonProperty("lots_available") String lotsAvailable,
-            @JsonProperty("lot_type") String lotType
-    ) {}
-
     @JsonIgnoreProperties(ignoreUnknown = true)
     private record CkanResponse(Result result) {}
 
     @JsonIgnoreProperties(ignoreUnknown = true)
-    private record Result(List<CarparkMetadata> records) {}
+    private record Result(List<CarparkMetadata> records, Integer total) {}
 }
@@ -42,6 +42,9 @@ public class KddController {
             messagingTemplate.convertAndSend("/topic/kdd/notifications", notification);
         });
 
+        // La lista se serializa una vez para todas las pestañas que muestran la barra lateral
+        messagingTemplate.convertAndSend("/topic/kdd/users", kddService.getAllUsers());
+
         return ResponseEntity.ok(user);
     }
 
@@ -45,9 +45,14 @@ public class Carpark {
     @Column(name = "car_park_basement")
     private String carparkBasement;
 
+    // WGS84, precomputed from x_coord/y_coord at import
+    private Double latitude;
+
+    private Double longitude;
+
     public Carpark() {}
 
-    public Carpark(String carparkNumber, String address, String xCoord, String yCoord, String carparkType, String typeOfParkingSystem, String shortTermParking, String freeParking, String nightParking, String carparkDecks, String gantryHeight, String carparkBasement) {
+    public Carpark(String carparkNumber, String address, String xCoord, String yCoord, String carparkType, String typeOfParkingSystem, String shortTermParking, String freeParking, String nightParking, String carparkDecks, String gantryHeight, String carparkBasement, Double latitude, Double longitude) {
         this.carparkNumber = carparkNumber;
         this.address = address;
         this.xCoord = xCoord;
@@ -60,6 +65,8 @@ public class Carpark {
         this.carparkDecks = carparkDecks;
         this.gantryHeight = gantryHeight;
         this.carparkBasement = carparkBasement;
+        this.latitude = latitude;
+        this.longitude = longitude;
     }
 
     public String getCarparkNumber() { return carparkNumber; }
@@ -97,4 +104,10 @@ public class Carpark {
 
     public String getCarparkBasement() { return carparkBasement; }
     public void setCarparkBasement(String carparkBasement) { this.carparkBasement = carparkBasement; }
+
+    public Double getLatitude() { return latitude; }
+    public void setLatitude(Double latitude) { this.latitude = latitude; }
+
+    public Double getLongitude() { return longitude; }
+    public void setLongitude(Double longitude) { this.longitude = longitude; }
 }
@@ -1,85 +1,558 @@
 package smartparking.model;
 
 import smartparking.observer.ParkingObserver;
+import smartparking.observer.SpotChangeSet;
+import smartparking.observer.SpotFilter;
+import smartparking.observer.SpotObserverRegistry;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
 
 /**
  * Representa un aparcamiento completo compuesto por varias plazas.
+ *
+ * El estado de cada plaza ocupa 2 bits en un {@code long[]} (32 plazas por palabra) y se direcciona
+ * directamente por id; las {@link ParkingSpot} son vistas que se crean al pedirlas. Así un parking
+ * de decenas de miles de plazas ocupa unos pocos KB y los cambios masivos se hacen por palabras.
+ *
+ * El estado completo (plazas, contadores por estado y secuencia de cambios) es un {@link Snapshot}
+ * inmutable y versionado. Cada escritura construye la versión siguiente sobre una copia y la publica
+ * con un único compare-and-set; si otro escritor se adelanta, se rehace sobre la versión nueva.
+ * Los lectores nunca toman cerrojo y siempre ven una versión coherente: una lista de plazas, sus
+ * estadísticas y su serialización salen de la misma foto.
+ *
+ * Los observadores se registran en el parking, no en cada plaza, con un {@link SpotFilter}
+ * opcional: cada cambio se entrega solo a las suscripciones que lo incluyen, en orden de versión.
+ * Un observador puede escribir en el mismo parking desde {@code onChanges}: la escritura se aplica
+ * en el acto, pero su notificación se entrega cuando vuelve la entrega en curso.
  */
 public class ParkingLot {
 
+    private static final int SPOTS_PER_WORD = 32;
+    private static final int STATUS_MASK = 0b11;
+    // Bit bajo de cada par: multiplicado por un código repite ese estado en las 32 plazas de la palabra
+    private static final long LOW_BITS = 0x5555555555555555L;
+    private static final SpotStatus[] STATUSES = SpotStatus.values();
+
+    // Contadores por estado empaquetados en un long (21 bits cada uno): una transición es una
+    // sola suma y una lectura devuelve los tres valores coherentes entre sí
+    private static final int COUNT_BITS = 21;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
     private final String name;
-    private final List<ParkingSpot> spots;
-    private final List<ParkingObserver> registeredObservers = new ArrayList<>();
+    private final AtomicReference<Snapshot> state;
+    private final AtomicLong retries = new AtomicLong();
+    private final SpotObserverRegistry observers = new SpotObserverRegistry();
+
+    // Las notificaciones salen en orden de versión aunque dos escritores publiquen a la vez
+    private final Object notifyLock = new Object();
+    private long notifiedVersion;
+    // Hilo que está entregando una versión y escrituras que sus observadores han hecho mientras tanto
+    private Thread dispatchingThread;
+    private Deque<PendingNotification> deferred;
 
     public ParkingLot(String name, int numberOfSpots) {
         this.name = name;
-        this.spots = new ArrayList<>();
-        for (int i = 1; i <= numberOfSpots; i++) {
-            spots.add(new ParkingSpot(i));
-        }
+        int size = Math.max(0, numberOfSpots);
+        this.state = new AtomicReference<>(
+                new Snapshot(this, 0, size, new long[wordsFor(size)], unit(SpotStatus.FREE.ordinal()) * size, 0));
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * Versión publicada actualmente. Todo lo que se lea de ella es coherente.
+     */
+    public Snapshot getSnapshot() {
+        return state.get();
+    }
+
+    /**
+     * Plazas de la versión actual, de solo lectura; cada elemento se crea al accederlo.
+     */
     public List<ParkingSpot> getSpots() {
-        return spots;
+        return state.get().spots();
     }
 
+    public int getSpotCount() {
+        return state.get().size;
+    }
+
+    /**
+     * Búsqueda directa por id (los ids van de 1 al número de plazas).
+     */
     public Optional<ParkingSpot> findSpotById(int id) {
-        return spots.stream()
-                .filter(s -> s.getId() == id)
-                .findFirst();
+        Snapshot current = state.get();
+        return id >= 1 && id <= current.size
+                ? Optional.of(new ParkingSpot(this, id, current.statusOf(id)))
+                : Optional.empty();
+    }
+
+    /**
+     * Estado de una plaza sin crear la vista. Una plaza eliminada al reducir el parking
+     * se considera fuera de servicio.
+     */
+    public SpotStatus statusOf(int id) {
+        return state.get().statusOf(id);
+    }
+
+    private static int code(long word, int lane) {
+        return (int) (word >>> (lane * 2)) & STATUS_MASK;
+    }
+
+    private static int wordsFor(int spots) {
+        return (spots + SPOTS_PER_WORD - 1) / SPOTS_PER_WORD;
     }
 
     /**
-     * Cambia el estado de una plaza concreta.
+     * Cambia el estado de una plaza concreta y lo notifica como un lote de un solo cambio.
+     * Compare-and-set con reintento: no espera al escritor del feed.
      */
     public void changeSpotStatus(int id, SpotStatus newStatus) {
-        findSpotById(id).ifPresent(spot -> spot.setStatus(newStatus));
+        int target = newStatus.ordinal();
+        commit(draft -> {
+            int index = id - 1;
+            if (index >= 0 && index < draft.size) {
+                draft.set(index, target);
+            }
+        });
+    }
+
+    /**
+     * Aplica un estado a cada plaza (por posición) y notifica todas las transiciones
+     * en un único {@link SpotChangeSet} a los observadores registrados en el parking.
+     */
+    public SpotChangeSet applyStatuses(IntFunction<SpotStatus> statusAt) {
+        return commit(draft -> {
+            for (int index = 0; index < draft.size; index++) {
+                draft.set(index, statusAt.apply(index).ordinal());
+            }
+        });
+    }
+
+    /**
+     * Pone todas las plazas en el mismo estado, palabra a palabra.
+     */
+    public SpotChangeSet fill(SpotStatus status) {
+        return commit(draft -> draft.fillRange(0, draft.size, status.ordinal()));
+    }
+
+    /**
+     * Las primeras {@code freeSpots} plazas libres y el resto ocupadas (proyección del feed),
+     * palabra a palabra.
+     */
+    public SpotChangeSet fillFreeThenOccupied(int freeSpots) {
+        return commit(draft -> draft.fillFreeThenOccupied(freeSpots));
+    }
+
+    /**
+     * Ajusta el tamaño y proyecta la disponibilidad en una sola versión, para que ningún lector
+     * vea el parking redimensionado pero sin rellenar.
+     */
+    public SpotChangeSet applyAvailability(int totalSpots, int freeSpots) {
+        return commit(draft -> {
+            draft.resize(totalSpots);
+            draft.fillFreeThenOccupied(freeSpots);
+        });
+    }
+
+
+    /**
+     * Ajusta el número de plazas al valor deseado, útil cuando el feed trae el total real.
+     * Las nuevas plazas empiezan libres; si se reduce, elimina las últimas.
+     */
+    public void resizeTo(int desiredSpots) {
+        commit(draft -> draft.resize(desiredSpots));
+    }
+
+    /**
+     * Construye la versión siguiente sobre la actual y la publica; si otro escritor publicó
+     * antes, descarta el borrador y lo rehace. Las escrituras que no cambian nada no publican.
+     */
+    private SpotChangeSet commit(Consumer<Draft> mutation) {
+        while (true) {
+            Snapshot current = state.get();
+            Draft draft = new Draft(current);
+            mutation.accept(draft);
+            if (!draft.isModified()) {
+                return draft.changes;
+            }
+            Snapshot next = draft.toSnapshot();
+            if (state.compareAndSet(current, next)) {
+                notifyInOrder(next.version, draft.changes);
+                return draft.changes;
+            }
+            retries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Espera a que se haya notificado la versión anterior y entrega esta. El registro de
+     * observadores reutiliza lotes por suscripción, así que las entregas no se solapan.
+     *
+     * Si quien escribe es un observador durante una entrega en el mismo hilo, esperar aquí a la
+     * versión anterior sería esperarse a sí mismo: la versión se encola y la entrega el hilo que
+     * despacha al volver, en orden con las de otros hilos. Si un observador lanza una excepción
+     * se entregan igualmente las versiones encoladas y después se relanza la primera.
+     */
+    private void notifyInOrder(long version, SpotChangeSet changes) {
+        boolean interrupted = false;
+        RuntimeException failure = null;
+        synchronized (notifyLock) {
+            if (dispatchingThread == Thread.currentThread()) {
+                if (deferred == null) {
+                    deferred = new ArrayDeque<>();
+                }
+                deferred.addLast(new PendingNotification(version, changes));
+                return;
+            }
+            Deque<PendingNotification> queued = null;
+            PendingNotification next = new PendingNotification(version, changes);
+            while (next != null) {
+                while (notifiedVersion != next.version() - 1) {
+                    try {
+                        notifyLock.wait();
+                    } catch (InterruptedException e) {
+                        // Hay que notificar igualmente o las versiones siguientes esperarían siempre
+                        interrupted = true;
+                    }
+                }
+                dispatchingThread = Thread.currentThread();
+                try {
+                    if (!next.changes().isEmpty()) {
+                        notifyObservers(next.changes());
+                    }
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                } finally {
+                    dispatchingThread = null;
+                    notifiedVersion = next.version();
+                    notifyLock.notifyAll();
+                }
+                // Las versiones encoladas son crecientes: las escribió este hilo una tras otra
+                if (deferred != null) {
+                    if (queued == null) {
+                        queued = deferred;
+                    } else {
+                        queued.addAll(deferred);
+                    }
+                    deferred = null;
+                }
+                next = queued == null ? null : queued.pollFirst();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private record PendingNotification(long version, SpotChangeSet changes) {}
+
+    private void notifyObservers(SpotChangeSet changes) {
+        observers.dispatch(changes);
     }
 
     /**
      * Registra un observador en TODAS las plazas del parking.
      */
-    public void attachObserverToAllSpots(ParkingObserver observer) {
-        if (observer == null) {
+    public synchronized void attachObserverToAllSpots(ParkingObserver observer) {
+        if (observer == null || findRegistration(observer, SpotFilter.ALL) != null) {
             return;
         }
-        registeredObservers.add(observer);
-        for (ParkingSpot spot : spots) {
-            spot.attach(observer);
-        }
+        observers.register(observer, SpotFilter.ALL);
     }
 
     /**
-     * Ajusta el número de plazas al valor deseado, útil cuando el feed trae el total real.
-     * Añade nuevas plazas con los observadores ya registrados; si se reduce, elimina las últimas.
+     * Registra un observador solo para las plazas que pasan el filtro. El alta es O(1) en el
+     * número de plazas y sigue valiendo si el parking cambia de tamaño.
      */
-    public synchronized void resizeTo(int desiredSpots) {
-        if (desiredSpots <= 0) {
+    public synchronized SpotObserverRegistry.Registration subscribe(ParkingObserver observer, SpotFilter filter) {
+        return observers.register(observer, filter);
+    }
+
+    public synchronized void unsubscribe(SpotObserverRegistry.Registration registration) {
+        observers.unregister(registration);
+    }
+
+    public List<SpotObserverRegistry.Registration> getSubscriptions() {
+        return observers.getRegistrations();
+    }
+
+    synchronized void attachObserverToSpot(int id, ParkingObserver observer) {
+        if (observer == null || findSingleSpot(id, observer) != null) {
             return;
         }
+        observers.register(observer, SpotFilter.spots(id));
+    }
+
+    synchronized void detachObserverFromSpot(int id, ParkingObserver observer) {
+        SpotObserverRegistry.Registration registration = findSingleSpot(id, observer);
+        if (registration != null) {
+            observers.unregister(registration);
+        }
+    }
+
+    private SpotObserverRegistry.Registration findRegistration(ParkingObserver observer, SpotFilter filter) {
+        for (SpotObserverRegistry.Registration registration : observers.getRegistrations()) {
+            if (registration.getObserver() == observer && registration.getFilter() == filter) {
+                return registration;
+            }
+        }
+        return null;
+    }
+
+    private SpotObserverRegistry.Registration findSingleSpot(int id, ParkingObserver observer) {
+        for (SpotObserverRegistry.Registration registration : observers.getRegistrations()) {
+            if (registration.getObserver() == observer && registration.getFilter().isSingleSpot(id)) {
+                return registration;
+            }
+        }
+        return null;
+    }
+
+    private static long unit(int statusCode) {
+        return 1L << (statusCode * COUNT_BITS);
+    }
+
+    /**
+     * Número de plazas en un estado, en O(1).
+     */
+    public int count(SpotStatus status) {
+        return state.get().count(status);
+    }
+
+    /**
+     * Contadores de todos los estados leídos a la vez, más la secuencia de cambios.
+     */
+    public Occupancy getOccupancy() {
+        return state.get().occupancy();
+    }
+
+    /**
+     * Número de transiciones de plaza desde la creación del parking; sirve para saber si algo cambió.
+     */
+    public long getChangeSequence() {
+        return state.get().changeSequence;
+    }
+
+    /**
+     * Escrituras que tuvieron que rehacerse porque otro escritor publicó antes.
+     */
+    public long getCommitRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Foto de los contadores por estado.
+     */
+    public record Occupancy(int free, int occupied, int outOfService, long changeSequence) {
+        public int total() {
+            return free + occupied + outOfService;
+        }
+    }
+
+    /**
+     * Versión inmutable del parking. Las palabras no se modifican nunca una vez publicadas;
+     * por encima de {@code size} los bits están siempre a cero.
+     */
+    public static final class Snapshot {
+
+        private final ParkingLot lot;
+        private final long version;
+        private final int size;
+        private final long[] words;
+        private final long packedCounts;
+        private final long changeSequence;
+
+        private Snapshot(ParkingLot lot, long version, int size, long[] words, long packedCounts,
+                         long changeSequence) {
+            this.lot = lot;
+            this.version = version;
+            this.size = size;
+            this.words = words;
+            this.packedCounts = packedCounts;
+            this.changeSequence = changeSequence;
+        }
+
+        public long version() {
+            return version;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public SpotStatus statusOf(int id) {
+            int index = id - 1;
+            if (index < 0 || index >= size) {
+                return SpotStatus.OUT_OF_SERVICE;
+            }
+            return STATUSES[code(words[index / SPOTS_PER_WORD], index % SPOTS_PER_WORD)];
+        }
+
+        public int count(SpotStatus status) {
+            return (int) (packedCounts >>> (status.ordinal() * COUNT_BITS) & COUNT_MASK);
+        }
+
+        public Occupancy occupancy() {
+            return new Occupancy(count(SpotStatus.FREE), count(SpotStatus.OCCUPIED),
+                    count(SpotStatus.OUT_OF_SERVICE), changeSequence);
+        }
+
+        /**
+         * Plazas de esta versión; sus estados no cambian aunque se publiquen otras.
+         */
+        public List<ParkingSpot> spots() {
+            return new SpotViews(this);
+        }
+    }
+
+    /**
+     * Versión en construcción. Copia las palabras la primera vez que escribe, de modo que una
+     * escritura sin efecto no reserva memoria.
+     */
+    private static final class Draft {
+
+        private final Snapshot base;
+        private final SpotChangeSet changes = new SpotChangeSet();
+        private long[] words;
+        private boolean copied;
+        private int size;
+        private long delta;
+
+        private Draft(Snapshot base) {
+            this.base = base;
+            this.words = base.words;
+            this.size = base.size;
+        }
+
+        private long[] writable() {
+            if (!copied) {
+                words = words.clone();
+                copied = true;
+            }
+            return words;
+        }
+
+        private void set(int index, int target) {
+            int word = index / SPOTS_PER_WORD;
+            int lane = index % SPOTS_PER_WORD;
+            int previous = code(words[word], lane);
+            if (previous != target) {
+                writable()[word] ^= (long) (previous ^ target) << (lane * 2);
+                changes.add(index + 1, (byte) previous, (byte) target);
+                delta += unit(target) - unit(previous);
+            }
+        }
+
+        private void fillFreeThenOccupied(int freeSpots) {
+            int free = Math.min(Math.max(freeSpots, 0), size);
+            fillRange(0, free, SpotStatus.FREE.ordinal());
+            fillRange(free, size, SpotStatus.OCCUPIED.ordinal());
+        }
+
+        /**
+         * Escribe un estado en las plazas [from, to) y anota solo las que cambian.
+         */
+        private void fillRange(int from, int to, int target) {
+            long pattern = LOW_BITS * target;
+            for (int index = from; index < to; ) {
+                int word = index / SPOTS_PER_WORD;
+                int firstLane = index % SPOTS_PER_WORD;
+                int lanes = Math.min(SPOTS_PER_WORD - firstLane, to - index);
+                long mask = (lanes == SPOTS_PER_WORD ? -1L : (1L << (lanes * 2)) - 1) << (firstLane * 2);
 
-        int current = spots.size();
-        if (desiredSpots > current) {
-            for (int i = current + 1; i <= desiredSpots; i++) {
-                ParkingSpot spot = new ParkingSpot(i);
-                // Propagamos observadores ya registrados
-                for (ParkingObserver observer : registeredObservers) {
-                    spot.attach(observer);
+                long previous = words[word];
+                long updated = (previous & ~mask) | (pattern & mask);
+                long diff = previous ^ updated;
+                if (diff != 0) {
+                    writable()[word] = updated;
+                    // Un bit por plaza cambiada, en la posición baja de su par
+                    long changed = (diff | (diff >>> 1)) & LOW_BITS;
+                    int base = word * SPOTS_PER_WORD + 1;
+                    while (changed != 0) {
+                        int bit = Long.numberOfTrailingZeros(changed);
+                        int old = (int) (previous >>> bit) & STATUS_MASK;
+                        changes.add(base + bit / 2, (byte) old, (byte) target);
+                        delta += unit(target) - unit(old);
+                        changed &= changed - 1;
+                    }
                 }
-                spots.add(spot);
+                index += lanes;
             }
-        } else if (desiredSpots < current) {
-            // Eliminamos plazas al final para reflejar fielmente el total informado
-            spots.subList(desiredSpots, current).clear();
+        }
+
+        private void resize(int desiredSpots) {
+            if (desiredSpots <= 0 || desiredSpots == size) {
+                return;
+            }
+            if (desiredSpots > size) {
+                // Los bits por encima de size siempre están a cero (FREE)
+                if (wordsFor(desiredSpots) > words.length) {
+                    words = Arrays.copyOf(words, Math.max(wordsFor(desiredSpots), words.length * 2));
+                    copied = true;
+                }
+                delta += unit(SpotStatus.FREE.ordinal()) * (desiredSpots - size);
+            } else {
+                // Eliminamos plazas al final para reflejar fielmente el total informado
+                long[] target = writable();
+                for (int index = desiredSpots; index < size; index++) {
+                    int word = index / SPOTS_PER_WORD;
+                    int lane = index % SPOTS_PER_WORD;
+                    delta -= unit(code(target[word], lane));
+                    target[word] &= ~((long) STATUS_MASK << (lane * 2));
+                }
+            }
+            size = desiredSpots;
+        }
+
+        private boolean isModified() {
+            return copied || size != base.size;
+        }
+
+        private Snapshot toSnapshot() {
+            return new Snapshot(base.lot, base.version + 1, size, words,
+                    base.packedCounts + delta, base.changeSequence + changes.size());
         }
     }
-}
 
+    private static final class SpotViews extends AbstractList<ParkingSpot> implements RandomAccess {
+
+        private final Snapshot snapshot;
+
+        private SpotViews(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public ParkingSpot get(int index) {
+            if (index < 0 || index >= snapshot.size) {
+                throw new IndexOutOfBoundsException("Plaza " + index + " fuera de rango (" + snapshot.size + ")");
+            }
+            return new ParkingSpot(snapshot.lot, index + 1, snapshot.statusOf(index + 1));
+        }
+
+        @Override
+        public int size() {
+            return snapshot.size;
+        }
+    }
+}
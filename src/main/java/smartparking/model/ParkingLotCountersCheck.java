@@ -0,0 +1,122 @@
+package smartparking.model;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Comprueba que los contadores por estado de {@link ParkingLot} coinciden con un recorrido
+ * completo de las plazas tras una secuencia aleatoria de cambios por lote, manuales, directos,
+ * de relleno por palabras y de redimensionado, y que el estado empaquetado coincide con un
+ * array de referencia de un estado por plaza.
+ * Uso: java smartparking.model.ParkingLotCountersCheck [semilla]; termina con código 1 si algo no cuadra.
+ */
+public class ParkingLotCountersCheck {
+
+    public static void main(String[] args) {
+        Random random = new Random(args.length > 0 ? Long.parseLong(args[0]) : 42L);
+        SpotStatus[] statuses = SpotStatus.values();
+        ParkingLot lot = new ParkingLot("check", 50);
+        SpotStatus[] reference = new SpotStatus[1000];
+        Arrays.fill(reference, SpotStatus.FREE);
+        long transitions = 0;
+        int failures = 0;
+
+        for (int step = 0; step < 10_000; step++) {
+            int size = lot.getSpots().size();
+            long before = lot.getChangeSequence();
+            long expectedChanges;
+            switch (random.nextInt(6)) {
+                case 0 -> {
+                    int free = random.nextInt(size + 1);
+                    expectedChanges = expect(reference, size, i -> i < free ? SpotStatus.FREE : SpotStatus.OCCUPIED);
+                    long reported = lot.applyStatuses(i -> i < free ? SpotStatus.FREE : SpotStatus.OCCUPIED).size();
+                    expectedChanges = reported == expectedChanges ? expectedChanges : -1;
+                }
+                case 1 -> {
+                    int free = random.nextInt(size + 1);
+                    expectedChanges = expect(reference, size, i -> i < free ? SpotStatus.FREE : SpotStatus.OCCUPIED);
+                    long reported = lot.fillFreeThenOccupied(free).size();
+                    expectedChanges = reported == expectedChanges ? expectedChanges : -1;
+                }
+                case 2 -> {
+                    SpotStatus target = statuses[random.nextInt(statuses.length)];
+                    expectedChanges = expect(reference, size, i -> target);
+                    long reported = lot.fill(target).size();
+                    expectedChanges = reported == expectedChanges ? expectedChanges : -1;
+                }
+                case 3 -> {
+                    int id = 1 + random.nextInt(size);
+                    SpotStatus target = statuses[random.nextInt(statuses.length)];
+                    expectedChanges = expect(reference, id - 1, target);
+                    lot.changeSpotStatus(id, target);
+                }
+                case 4 -> {
+                    int index = random.nextInt(size);
+                    SpotStatus target = statuses[random.nextInt(statuses.length)];
+                    expectedChanges = expect(reference, index, target);
+                    lot.getSpots().get(index).setStatus(target);
+                }
+                default -> {
+                    int newSize = 1 + random.nextInt(reference.length);
+                    for (int i = Math.min(newSize, size); i < reference.length; i++) {
+                        reference[i] = SpotStatus.FREE;
+                    }
+                    lot.resizeTo(newSize);
+                    expectedChanges = 0;
+                }
+            }
+            transitions += Math.max(0, expectedChanges);
+
+            if (!matchesFullScan(lot) || !matchesReference(lot, reference)
+                    || lot.getChangeSequence() - before != expectedChanges) {
+                failures++;
+                System.out.println("MISMATCH at step " + step + ": " + lot.getOccupancy());
+            }
+        }
+
+        System.out.println("Transitions: " + transitions + ", sequence: " + lot.getChangeSequence());
+        if (failures != 0 || transitions != lot.getChangeSequence()) {
+            System.out.println("Counters are INCONSISTENT (" + failures + " mismatches).");
+            System.exit(1);
+        }
+        System.out.println("Counters match a full scan.");
+    }
+
+    private static long expect(SpotStatus[] reference, int size, IntFunction<SpotStatus> statusAt) {
+        long changes = 0;
+        for (int i = 0; i < size; i++) {
+            changes += expect(reference, i, statusAt.apply(i));
+        }
+        return changes;
+    }
+
+    private static long expect(SpotStatus[] reference, int index, SpotStatus target) {
+        if (reference[index] == target) {
+            return 0;
+        }
+        reference[index] = target;
+        return 1;
+    }
+
+    private static boolean matchesReference(ParkingLot lot, SpotStatus[] reference) {
+        for (int i = 0; i < lot.getSpotCount(); i++) {
+            if (lot.statusOf(i + 1) != reference[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesFullScan(ParkingLot lot) {
+        int[] scanned = new int[SpotStatus.values().length];
+        for (ParkingSpot spot : lot.getSpots()) {
+            scanned[spot.getStatus().ordinal()]++;
+        }
+        ParkingLot.Occupancy occupancy = lot.getOccupancy();
+        return occupancy.free() == scanned[SpotStatus.FREE.ordinal()]
+                && occupancy.occupied() == scanned[SpotStatus.OCCUPIED.ordinal()]
+                && occupancy.outOfService() == scanned[SpotStatus.OUT_OF_SERVICE.ordinal()]
+                && occupancy.total() == lot.getSpots().size();
+    }
+}
@@ -2,24 +2,39 @@ package smartparking.model;
 
 import smartparking.observer.ParkingObserver;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-
 /**
  * Representa una plaza de aparcamiento individual.
  * Actúa como "Subject" del patrón Observer.
+ *
+ * Las plazas de un {@link ParkingLot} son vistas ligeras que se crean al pedirlas, con el estado
+ * de la versión del parking de la que salen; cambiarlo publica una versión nueva del parking.
+ * Las plazas creadas con {@code new} fuera de un parking (o como copia en un evento) solo
+ * guardan su propio estado.
  */
 public class ParkingSpot {
 
     private final int id;
+    // Parking al que pertenece; null en plazas sueltas y copias
+    private final ParkingLot lot;
     private SpotStatus status;
-    private final List<ParkingObserver> observers;
 
     public ParkingSpot(int id) {
+        this(id, SpotStatus.FREE);
+    }
+
+    /**
+     * Copia desacoplada de una plaza en un estado dado (eventos asíncronos).
+     */
+    public ParkingSpot(int id, SpotStatus status) {
+        this.id = id;
+        this.lot = null;
+        this.status = status;
+    }
+
+    ParkingSpot(ParkingLot lot, int id, SpotStatus status) {
         this.id = id;
-        this.status = SpotStatus.FREE;
-        this.observers = new ArrayList<>();
+        this.lot = lot;
+        this.status = status;
     }
 
     public int getId() {
@@ -30,27 +45,26 @@ public class ParkingSpot {
         return status;
     }
 
+    /**
+     * Observa solo esta plaza. En plazas sueltas no tiene efecto.
+     */
     public void attach(ParkingObserver observer) {
-        if (observer != null && !observers.contains(observer)) {
-            observers.add(observer);
+        if (lot != null) {
+            lot.attachObserverToSpot(id, observer);
         }
     }
 
     public void detach(ParkingObserver observer) {
-        observers.remove(observer);
-    }
-
-    public void setStatus(SpotStatus newStatus) {
-        if (!Objects.equals(this.status, newStatus)) {
-            this.status = newStatus;
-            notifyObservers();
+        if (lot != null) {
+            lot.detachObserverFromSpot(id, observer);
         }
     }
 
-    private void notifyObservers() {
-        for (ParkingObserver observer : observers) {
-            observer.update(this);
+    public void setStatus(SpotStatus newStatus) {
+        if (lot != null) {
+            lot.changeSpotStatus(id, newStatus);
         }
+        this.status = newStatus;
     }
 
     @Override
@@ -58,4 +72,3 @@ public class ParkingSpot {
         return "ParkingSpot{id=" + id + ", status=" + status + "}";
     }
 }
-
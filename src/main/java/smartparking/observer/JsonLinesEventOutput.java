@@ -0,0 +1,54 @@
+package smartparking.observer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Un objeto JSON por línea en un fichero, en modo append. Se vuelca al final de cada lote.
+ */
+@Component
+@ConditionalOnProperty(name = "parking.observer-sink.output", havingValue = "jsonl")
+public class JsonLinesEventOutput implements ObserverEventOutput {
+
+    private final ObjectMapper objectMapper;
+    private final Path file;
+    private BufferedWriter writer;
+
+    public JsonLinesEventOutput(
+            ObjectMapper objectMapper,
+            @Value("${parking.observer-sink.file:observer-events.jsonl}") String file
+    ) {
+        this.objectMapper = objectMapper;
+        this.file = Path.of(file);
+    }
+
+    @Override
+    public void write(List<ObserverEvent> events) throws IOException {
+        if (writer == null) {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        for (ObserverEvent event : events) {
+            writer.write(objectMapper.writeValueAsString(event));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+}
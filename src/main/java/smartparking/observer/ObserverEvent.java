@@ -0,0 +1,27 @@
+package smartparking.observer;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Evento estructurado que un observador entrega al {@link ObserverEventSink} en lugar de
+ * escribir en consola.
+ *
+ * @param source   observador que lo emite (security, dashboard...)
+ * @param category categoría sobre la que se aplican muestreo y límite de frecuencia
+ * @param fields   datos del evento, para salidas estructuradas
+ */
+public record ObserverEvent(
+        Instant timestamp,
+        String source,
+        String category,
+        Severity severity,
+        String message,
+        Map<String, Object> fields
+) {
+
+    public enum Severity {
+        INFO,
+        ALERT
+    }
+}
@@ -0,0 +1,16 @@
+package smartparking.observer;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Destino final de los eventos de observadores. Solo lo llama el hilo del sink,
+ * con los eventos acumulados desde la escritura anterior.
+ */
+public interface ObserverEventOutput {
+
+    void write(List<ObserverEvent> events) throws IOException;
+
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,243 @@
+package smartparking.observer;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Salida asíncrona y acotada de los observadores de consola.
+ *
+ * {@link #emit} nunca bloquea: aplica el muestreo y el límite de frecuencia de la categoría y
+ * encola el evento; si la cola está llena lo descarta. Un hilo propio vacía la cola por lotes
+ * hacia la {@link ObserverEventOutput} configurada y, cada intervalo de resumen, emite por cada
+ * categoría cuántos eventos se han suprimido en lugar de escribirlos uno a uno.
+ */
+@Component
+public class ObserverEventSink {
+
+    private static final Logger log = LoggerFactory.getLogger(ObserverEventSink.class);
+    private static final int MAX_BATCH = 256;
+
+    private final ObserverEventOutput output;
+    private final BlockingQueue<ObserverEvent> queue;
+    private final double defaultRatePerSecond;
+    private final Map<String, Double> sampleRates;
+    private final Map<String, Double> rateLimits;
+    private final long summaryIntervalMillis;
+    private final Map<String, Category> categories = new ConcurrentHashMap<>();
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    public ObserverEventSink(
+            ObserverEventOutput output,
+            @Value("${parking.observer-sink.capacity:4096}") int capacity,
+            @Value("${parking.observer-sink.rate-per-second:20}") double defaultRatePerSecond,
+            @Value("${parking.observer-sink.sample-rates:}") String sampleRates,
+            @Value("${parking.observer-sink.rate-limits:}") String rateLimits,
+            @Value("${parking.observer-sink.summary-interval-ms:10000}") long summaryIntervalMillis
+    ) {
+        this.output = output;
+        this.queue = new ArrayBlockingQueue<>(Math.max(16, capacity));
+        this.defaultRatePerSecond = defaultRatePerSecond;
+        this.sampleRates = parseRates(sampleRates);
+        this.rateLimits = parseRates(rateLimits);
+        this.summaryIntervalMillis = Math.max(100, summaryIntervalMillis);
+        this.worker = new Thread(this::run, "observer-event-sink");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Formato {@code categoria:valor,categoria:valor}.
+     */
+    static Map<String, Double> parseRates(String spec) {
+        Map<String, Double> rates = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return rates;
+        }
+        for (String entry : spec.split(",")) {
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            try {
+                rates.put(entry.substring(0, colon).trim(), Double.parseDouble(entry.substring(colon + 1).trim()));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring observer sink rate '{}'", entry);
+            }
+        }
+        return rates;
+    }
+
+    public void emit(String source, String category, String message, Map<String, Object> fields) {
+        emit(source, category, ObserverEvent.Severity.INFO, message, fields);
+    }
+
+    public void alert(String source, String category, String message, Map<String, Object> fields) {
+        emit(source, category, ObserverEvent.Severity.ALERT, message, fields);
+    }
+
+    public void emit(String source, String category, ObserverEvent.Severity severity,
+                     String message, Map<String, Object> fields) {
+        Category state = categories.computeIfAbsent(category, this::newCategory);
+        if (!state.admit()) {
+            return;
+        }
+        ObserverEvent event = new ObserverEvent(Instant.now(), source, category, severity, message, fields);
+        if (!queue.offer(event)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private Category newCategory(String name) {
+        return new Category(
+                sampleRates.getOrDefault(name, 1.0),
+                rateLimits.getOrDefault(name, defaultRatePerSecond)
+        );
+    }
+
+    private void run() {
+        List<ObserverEvent> batch = new ArrayList<>(MAX_BATCH);
+        long nextSummary = System.currentTimeMillis() + summaryIntervalMillis;
+        while (running || !queue.isEmpty()) {
+            try {
+                long wait = Math.max(1, nextSummary - System.currentTimeMillis());
+                ObserverEvent first = queue.poll(wait, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+                if (System.currentTimeMillis() >= nextSummary) {
+                    addSuppressionSummaries(batch);
+                    nextSummary = System.currentTimeMillis() + summaryIntervalMillis;
+                }
+                if (!batch.isEmpty()) {
+                    write(batch);
+                }
+            } catch (InterruptedException e) {
+                if (!running) {
+                    queue.drainTo(batch);
+                    write(batch);
+                    return;
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void addSuppressionSummaries(List<ObserverEvent> batch) {
+        categories.forEach((name, state) -> {
+            long suppressed = state.suppressedSinceSummary.getAndSet(0);
+            if (suppressed > 0) {
+                batch.add(new ObserverEvent(Instant.now(), "sink", name, ObserverEvent.Severity.INFO,
+                        suppressed + " eventos de '" + name + "' suprimidos en los últimos "
+                                + (summaryIntervalMillis % 1000 == 0
+                                        ? summaryIntervalMillis / 1000 + " s"
+                                        : summaryIntervalMillis + " ms"),
+                        Map.of("suppressed", suppressed)));
+            }
+        });
+    }
+
+    private void write(List<ObserverEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            output.write(batch);
+            written.addAndGet(batch.size());
+        } catch (IOException | RuntimeException e) {
+            dropped.addAndGet(batch.size());
+            log.warn("Observer event output failed for {} events: {}", batch.size(), e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        worker.interrupt();
+        try {
+            worker.join(1000);
+            output.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.warn("Could not close observer event output: {}", e.toString());
+        }
+    }
+
+    public SinkStats getStats() {
+        long suppressed = 0;
+        for (Category category : categories.values()) {
+            suppressed += category.suppressed.get();
+        }
+        return new SinkStats(queue.size(), written.get(), dropped.get(), suppressed);
+    }
+
+    public record SinkStats(int queued, long written, long dropped, long suppressed) {}
+
+    /**
+     * Muestreo y token bucket de una categoría; la ráfaga permitida es un segundo de eventos.
+     */
+    private static final class Category {
+
+        private final double sampleRate;
+        private final double ratePerSecond;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private final AtomicLong suppressed = new AtomicLong();
+        private final AtomicLong suppressedSinceSummary = new AtomicLong();
+
+        private Category(double sampleRate, double ratePerSecond) {
+            this.sampleRate = sampleRate;
+            this.ratePerSecond = ratePerSecond;
+            this.tokens = Math.max(1, ratePerSecond);
+        }
+
+        private boolean admit() {
+            if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+                return suppress();
+            }
+            if (ratePerSecond <= 0) {
+                return true;
+            }
+            synchronized (this) {
+                long now = System.nanoTime();
+                double burst = Math.max(1, ratePerSecond);
+                tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerSecond / 1e9);
+                lastRefill = now;
+                if (tokens >= 1) {
+                    tokens -= 1;
+                    return true;
+                }
+            }
+            return suppress();
+        }
+
+        private boolean suppress() {
+            suppressed.incrementAndGet();
+            suppressedSinceSummary.incrementAndGet();
+            return false;
+        }
+    }
+}
@@ -8,7 +8,17 @@ import smartparking.model.ParkingSpot;
  * implementa esta interfaz.
  */
 public interface ParkingObserver {
-    void update(ParkingSpot spot);
-}
 
+    void update(ParkingSpot spot);
 
+    /**
+     * Todas las transiciones de una misma actualización del parking.
+     * Por defecto se notifican una a una con {@link #update(ParkingSpot)}; los observadores
+     * que puedan trabajar por lote deberían sobrescribirlo.
+     */
+    default void onChanges(SpotChangeSet changes) {
+        for (int i = 0; i < changes.size(); i++) {
+            update(new ParkingSpot(changes.spotId(i), changes.newStatus(i)));
+        }
+    }
+}
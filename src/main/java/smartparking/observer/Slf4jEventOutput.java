@@ -0,0 +1,34 @@
+package smartparking.observer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Salida por defecto: un logger por observador ({@code smartparking.observers.<source>});
+ * las alertas van a WARN y el resto a INFO.
+ */
+@Component
+@ConditionalOnProperty(name = "parking.observer-sink.output", havingValue = "slf4j", matchIfMissing = true)
+public class Slf4jEventOutput implements ObserverEventOutput {
+
+    private final Map<String, Logger> loggers = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(List<ObserverEvent> events) {
+        for (ObserverEvent event : events) {
+            Logger logger = loggers.computeIfAbsent(event.source(),
+                    source -> LoggerFactory.getLogger("smartparking.observers." + source));
+            if (event.severity() == ObserverEvent.Severity.ALERT) {
+                logger.warn("{} {}", event.message(), event.fields());
+            } else if (logger.isInfoEnabled()) {
+                logger.info("{} {}", event.message(), event.fields());
+            }
+        }
+    }
+}
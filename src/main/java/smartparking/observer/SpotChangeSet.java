@@ -0,0 +1,104 @@
+package smartparking.observer;
+
+import smartparking.model.SpotStatus;
+
+import java.util.Arrays;
+
+/**
+ * Transiciones de plazas producidas por una misma actualización (un ciclo del feed,
+ * un fuera de servicio general o un cambio manual), en arrays primitivos paralelos.
+ *
+ * Los consumidores del bus reutilizan la instancia: solo es válida durante
+ * {@link ParkingObserver#onChanges(SpotChangeSet)}.
+ */
+public final class SpotChangeSet {
+
+    private static final SpotStatus[] STATUSES = SpotStatus.values();
+
+    private int[] spotIds;
+    private byte[] oldStatuses;
+    private byte[] newStatuses;
+    private int size;
+
+    public SpotChangeSet() {
+        this(16);
+    }
+
+    public SpotChangeSet(int initialCapacity) {
+        int capacity = Math.max(1, initialCapacity);
+        this.spotIds = new int[capacity];
+        this.oldStatuses = new byte[capacity];
+        this.newStatuses = new byte[capacity];
+    }
+
+    public void add(int spotId, SpotStatus oldStatus, SpotStatus newStatus) {
+        add(spotId, (byte) oldStatus.ordinal(), (byte) newStatus.ordinal());
+    }
+
+    public void add(int spotId, byte oldStatus, byte newStatus) {
+        if (size == spotIds.length) {
+            int capacity = size * 2;
+            spotIds = Arrays.copyOf(spotIds, capacity);
+            oldStatuses = Arrays.copyOf(oldStatuses, capacity);
+            newStatuses = Arrays.copyOf(newStatuses, capacity);
+        }
+        spotIds[size] = spotId;
+        oldStatuses[size] = oldStatus;
+        newStatuses[size] = newStatus;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int spotId(int index) {
+        return spotIds[index];
+    }
+
+    public SpotStatus oldStatus(int index) {
+        return STATUSES[oldStatuses[index]];
+    }
+
+    public SpotStatus newStatus(int index) {
+        return STATUSES[newStatuses[index]];
+    }
+
+    /**
+     * Ordinal de {@link SpotStatus} del estado anterior, sin pasar por el enum.
+     */
+    public byte oldStatusOrdinal(int index) {
+        return oldStatuses[index];
+    }
+
+    public byte newStatusOrdinal(int index) {
+        return newStatuses[index];
+    }
+
+    /**
+     * Número de plazas que han pasado al estado dado en este lote.
+     */
+    public int countTo(SpotStatus status) {
+        byte ordinal = (byte) status.ordinal();
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (newStatuses[i] == ordinal) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "SpotChangeSet{size=" + size + "}";
+    }
+}
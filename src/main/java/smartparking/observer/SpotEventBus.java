@@ -0,0 +1,365 @@
+package smartparking.observer;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import smartparking.model.ParkingSpot;
+import smartparking.model.SpotStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bus asíncrono entre los cambios de plaza y los observadores.
+ *
+ * Se registra como observador de todas las plazas: cada cambio se copia (id y estados) en un ring
+ * buffer preasignado por suscriptor y cada suscriptor lo consume en su propio hilo. El productor
+ * no reserva memoria ni espera nunca a un observador lento; si un ring se llena se aplica la
+ * {@link OverflowPolicy} de ese suscriptor.
+ *
+ * Los lotes ({@link SpotChangeSet}) conservan sus límites: el último evento va marcado y el
+ * consumidor entrega el lote entero con una sola llamada a {@link ParkingObserver#onChanges}.
+ * Un lote de más de medio ring se parte en trozos de ese tamaño, cada uno con su marca, y se
+ * entrega en varias llamadas. Si se pierden eventos de un trozo se descarta el trozo completo:
+ * un observador nunca recibe un trozo a medias ni mezclado con otro.
+ * Un suscriptor con {@link SpotFilter} solo recibe en su ring los cambios de sus plazas.
+ */
+@Component
+public class SpotEventBus implements ParkingObserver {
+
+    private static final Logger log = LoggerFactory.getLogger(SpotEventBus.class);
+
+    // Codificación de un slot: estado nuevo en bits 0-1, anterior en 2-3 y fin de lote en el bit 4
+    private static final int OLD_SHIFT = 2;
+    private static final int STATUS_MASK = 0b11;
+    private static final byte END_OF_BATCH = 0x10;
+
+    /**
+     * Cómo espera el hilo consumidor cuando no hay eventos.
+     */
+    public enum WaitStrategy {
+        /** Se duerme hasta que el productor lo despierta; sin CPU en reposo. */
+        BLOCKING,
+        /** Gira, cede el hilo y luego duerme intervalos cortos. */
+        SLEEPING,
+        /** Cede el hilo en bucle; menor latencia, consume CPU. */
+        YIELDING,
+        /** Espera activa; solo con núcleos dedicados. */
+        BUSY_SPIN
+    }
+
+    /**
+     * Qué se descarta cuando el ring de un suscriptor está lleno.
+     */
+    public enum OverflowPolicy {
+        /** Se sobrescriben los eventos más antiguos pendientes. */
+        DROP_OLDEST,
+        /** Se descarta el evento nuevo. */
+        DROP_NEWEST
+    }
+
+    private final int bufferSize;
+    private final WaitStrategy defaultWaitStrategy;
+    private final OverflowPolicy defaultOverflowPolicy;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    public SpotEventBus(
+            @Value("${parking.events.buffer-size:1024}") int bufferSize,
+            @Value("${parking.events.wait-strategy:BLOCKING}") WaitStrategy defaultWaitStrategy,
+            @Value("${parking.events.overflow:DROP_OLDEST}") OverflowPolicy defaultOverflowPolicy
+    ) {
+        this.bufferSize = Integer.highestOneBit(Math.max(2, bufferSize - 1)) << 1;
+        this.defaultWaitStrategy = defaultWaitStrategy;
+        this.defaultOverflowPolicy = defaultOverflowPolicy;
+    }
+
+    public Subscription subscribe(String name, ParkingObserver observer) {
+        return subscribe(name, observer, SpotFilter.ALL);
+    }
+
+    public Subscription subscribe(String name, ParkingObserver observer, SpotFilter filter) {
+        return subscribe(name, observer, filter, defaultWaitStrategy, defaultOverflowPolicy);
+    }
+
+    public Subscription subscribe(String name, ParkingObserver observer,
+                                  WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        return subscribe(name, observer, SpotFilter.ALL, waitStrategy, overflowPolicy);
+    }
+
+    public Subscription subscribe(String name, ParkingObserver observer, SpotFilter filter,
+                                  WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+        Subscription subscription = new Subscription(name, observer, filter, bufferSize, waitStrategy, overflowPolicy);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        subscriptions.remove(subscription);
+        subscription.stop();
+    }
+
+    public List<Subscription> getSubscriptions() {
+        return new ArrayList<>(subscriptions);
+    }
+
+    /**
+     * Lado productor de un cambio suelto hecho con {@link ParkingSpot#setStatus} directamente.
+     * El estado anterior no se conoce aquí y se publica igual al nuevo.
+     */
+    @Override
+    public void update(ParkingSpot spot) {
+        publish(spot.getId(), spot.getStatus());
+    }
+
+    /**
+     * Lado productor de un lote: se ejecuta dentro de {@link smartparking.model.ParkingLot}
+     * al aplicar un ciclo del feed o un cambio manual.
+     */
+    @Override
+    public void onChanges(SpotChangeSet changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        // Los cambios pueden llegar del feed y de la API REST; el cerrojo solo cubre la copia al ring
+        synchronized (this) {
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(changes);
+            }
+        }
+    }
+
+    public void publish(int spotId, SpotStatus status) {
+        byte code = (byte) (status.ordinal() | status.ordinal() << OLD_SHIFT | END_OF_BATCH);
+        synchronized (this) {
+            for (Subscription subscription : subscriptions) {
+                subscription.offer(spotId, code);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscription subscription : subscriptions) {
+            subscription.stop();
+        }
+        subscriptions.clear();
+    }
+
+    /**
+     * Ring de un observador con su hilo consumidor. Un único productor (bajo el cerrojo del bus)
+     * y un único consumidor: las secuencias volátiles bastan para publicar los slots.
+     */
+    public static final class Subscription {
+
+        private final String name;
+        private final ParkingObserver observer;
+        private final SpotFilter filter;
+        private final WaitStrategy waitStrategy;
+        private final OverflowPolicy overflowPolicy;
+        private final int mask;
+        private final int[] spotIds;
+        private final byte[] codes;
+        private final Thread thread;
+        // Lote en curso del consumidor, reutilizado entre entregas
+        private final SpotChangeSet batch = new SpotChangeSet();
+
+        // Siguiente secuencia a escribir (productor) y a leer (consumidor)
+        private volatile long head;
+        private volatile long tail;
+        private volatile boolean waiting;
+        private volatile boolean running = true;
+        // Solo del consumidor: tras un solape se descarta hasta el siguiente fin de lote
+        private boolean skipping;
+
+        private final AtomicLong dropped = new AtomicLong();
+        private volatile long delivered;
+
+        private Subscription(String name, ParkingObserver observer, SpotFilter filter, int capacity,
+                             WaitStrategy waitStrategy, OverflowPolicy overflowPolicy) {
+            this.name = name;
+            this.observer = observer;
+            this.filter = filter;
+            this.waitStrategy = waitStrategy;
+            this.overflowPolicy = overflowPolicy;
+            this.mask = capacity - 1;
+            this.spotIds = new int[capacity];
+            this.codes = new byte[capacity];
+            this.thread = new Thread(this::run, "spot-events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void offer(int spotId, byte code) {
+            if (!filter.matches(spotId)) {
+                return;
+            }
+            long h = head;
+            if (overflowPolicy == OverflowPolicy.DROP_NEWEST && h - tail > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+            // Con DROP_OLDEST se escribe siempre; el consumidor detecta el solape al leer
+            int slot = (int) (h & mask);
+            spotIds[slot] = spotId;
+            codes[slot] = code;
+            head = h + 1;
+            signal();
+        }
+
+        /**
+         * Escribe el lote en trozos de como mucho medio ring. Con DROP_NEWEST un trozo que no cabe
+         * entero se descarta completo.
+         */
+        private void offer(SpotChangeSet changes) {
+            boolean all = filter.isAll();
+            int remaining = all ? changes.size() : countMatching(changes);
+            int chunk = (mask + 1) / 2;
+            int i = 0;
+            while (remaining > 0) {
+                int n = Math.min(chunk, remaining);
+                remaining -= n;
+                long h = head;
+                boolean drop = overflowPolicy == OverflowPolicy.DROP_NEWEST && h - tail + n > mask + 1;
+                int written = 0;
+                for (; written < n; i++) {
+                    if (!all && !filter.matches(changes.spotId(i))) {
+                        continue;
+                    }
+                    if (drop) {
+                        written++;
+                        continue;
+                    }
+                    int slot = (int) (h & mask);
+                    spotIds[slot] = changes.spotId(i);
+                    byte code = (byte) (changes.newStatusOrdinal(i) | changes.oldStatusOrdinal(i) << OLD_SHIFT);
+                    codes[slot] = ++written == n ? (byte) (code | END_OF_BATCH) : code;
+                    // Se publica slot a slot para que el consumidor detecte solapes; entrega al ver el fin de lote
+                    head = ++h;
+                }
+                if (drop) {
+                    dropped.addAndGet(n);
+                }
+            }
+            signal();
+        }
+
+        private int countMatching(SpotChangeSet changes) {
+            int count = 0;
+            for (int i = 0; i < changes.size(); i++) {
+                if (filter.matches(changes.spotId(i))) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void signal() {
+            if (waiting) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        private void run() {
+            int idle = 0;
+            while (running) {
+                long t = tail;
+                long h = head;
+                if (t == h) {
+                    idle = await(idle);
+                    continue;
+                }
+                idle = 0;
+
+                int slot = (int) (t & mask);
+                int spotId = spotIds[slot];
+                byte code = codes[slot];
+                if (overflowPolicy == OverflowPolicy.DROP_OLDEST && head - t > mask) {
+                    // El productor ha reutilizado (o está reutilizando) este slot:
+                    // saltamos al evento más antiguo que seguro sigue intacto. Lo ya acumulado y el
+                    // resto de su trozo han perdido eventos: se descartan para no entregar un lote a medias
+                    long oldest = head - mask;
+                    dropped.addAndGet(oldest - t + batch.size());
+                    batch.clear();
+                    skipping = true;
+                    tail = oldest;
+                    continue;
+                }
+                tail = t + 1;
+                if (skipping) {
+                    dropped.incrementAndGet();
+                    skipping = (code & END_OF_BATCH) == 0;
+                    continue;
+                }
+                batch.add(spotId, (byte) (code >> OLD_SHIFT & STATUS_MASK), (byte) (code & STATUS_MASK));
+                if ((code & END_OF_BATCH) != 0) {
+                    deliver();
+                }
+            }
+        }
+
+        private void deliver() {
+            try {
+                observer.onChanges(batch);
+                delivered += batch.size();
+            } catch (RuntimeException e) {
+                log.warn("Observer {} failed on a batch of {} changes: {}", name, batch.size(), e.toString());
+            } finally {
+                batch.clear();
+            }
+        }
+
+        private int await(int idle) {
+            switch (waitStrategy) {
+                case BUSY_SPIN -> Thread.onSpinWait();
+                case YIELDING -> Thread.yield();
+                case SLEEPING -> {
+                    if (idle < 100) {
+                        Thread.onSpinWait();
+                    } else if (idle < 200) {
+                        Thread.yield();
+                    } else {
+                        LockSupport.parkNanos(100_000L);
+                    }
+                }
+                case BLOCKING -> {
+                    waiting = true;
+                    if (tail == head && running) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                }
+            }
+            return idle + 1;
+        }
+
+        private void stop() {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SpotFilter getFilter() {
+            return filter;
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+
+        public long getDelivered() {
+            return delivered;
+        }
+
+        public long getLag() {
+            return Math.min(head - tail, mask + 1);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package smartparking.observer;
+
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Qué plazas le interesan a un observador: todas, un conjunto de ids o un predicado sobre el id.
+ *
+ * Los conjuntos de ids se pueden indexar por plaza, de modo que un cambio solo llega a quien lo
+ * ha pedido; los predicados se evalúan cambio a cambio.
+ */
+public final class SpotFilter {
+
+    public static final SpotFilter ALL = new SpotFilter(null, null);
+
+    // Ids ordenados y sin repetir; null si el filtro no es un conjunto
+    private final int[] ids;
+    private final IntPredicate predicate;
+
+    private SpotFilter(int[] ids, IntPredicate predicate) {
+        this.ids = ids;
+        this.predicate = predicate;
+    }
+
+    public static SpotFilter spots(int... spotIds) {
+        int[] sorted = Arrays.stream(spotIds).distinct().sorted().toArray();
+        return new SpotFilter(sorted, null);
+    }
+
+    public static SpotFilter matching(IntPredicate predicate) {
+        return new SpotFilter(null, predicate);
+    }
+
+    public boolean isAll() {
+        return ids == null && predicate == null;
+    }
+
+    /**
+     * Ids del conjunto (ordenados), o null si es un filtro por predicado o de todas las plazas.
+     */
+    public int[] ids() {
+        return ids == null ? null : ids.clone();
+    }
+
+    public boolean matches(int spotId) {
+        if (ids != null) {
+            return Arrays.binarySearch(ids, spotId) >= 0;
+        }
+        return predicate == null || predicate.test(spotId);
+    }
+
+    /**
+     * Si el filtro es exactamente la plaza dada (suscripción de {@code ParkingSpot#attach}).
+     */
+    public boolean isSingleSpot(int spotId) {
+        return ids != null && ids.length == 1 && ids[0] == spotId;
+    }
+
+    int[] idsView() {
+        return ids;
+    }
+
+    @Override
+    public String toString() {
+        if (isAll()) {
+            return "SpotFilter{all}";
+        }
+        return ids != null ? "SpotFilter{spots=" + Arrays.toString(ids) + "}" : "SpotFilter{predicate}";
+    }
+}
@@ -0,0 +1,213 @@
+package smartparking.observer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Registro de observadores de un parking, con un filtro de plazas por suscripción.
+ *
+ * Copy-on-write: cada alta o baja publica una foto inmutable con las suscripciones ya clasificadas
+ * (todas las plazas, por predicado e indexadas por id de plaza), así que notificar no toma cerrojos
+ * y solo recorre a los interesados en cada cambio. Ni el alta ni el redimensionado del parking
+ * dependen del número de plazas.
+ *
+ * {@link #dispatch} reutiliza un lote por suscripción: debe llamarse desde un único hilo a la vez
+ * (el parking entrega las versiones en orden, de una en una). Un observador que lanza una
+ * excepción se registra en el log y no impide la entrega a los demás.
+ */
+public final class SpotObserverRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(SpotObserverRegistry.class);
+
+    private static final Registration[] NO_REGISTRATIONS = new Registration[0];
+
+    private final List<Registration> registrations = new ArrayList<>();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public synchronized Registration register(ParkingObserver observer, SpotFilter filter) {
+        Registration registration = new Registration(observer, filter);
+        registrations.add(registration);
+        snapshot = Snapshot.of(registrations);
+        return registration;
+    }
+
+    public synchronized boolean unregister(Registration registration) {
+        boolean removed = registrations.remove(registration);
+        if (removed) {
+            snapshot = Snapshot.of(registrations);
+        }
+        return removed;
+    }
+
+    public List<Registration> getRegistrations() {
+        return List.of(snapshot.registrations);
+    }
+
+    public boolean isEmpty() {
+        return snapshot.registrations.length == 0;
+    }
+
+    /**
+     * Entrega a cada suscripción solo los cambios que pasan su filtro, en un único lote.
+     */
+    public void dispatch(SpotChangeSet changes) {
+        Snapshot current = snapshot;
+        for (Registration registration : current.whole) {
+            deliver(registration, changes);
+        }
+        if (current.filtered.length == 0) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < changes.size(); i++) {
+                int spotId = changes.spotId(i);
+                int slot = Arrays.binarySearch(current.indexedIds, spotId);
+                if (slot >= 0) {
+                    for (Registration registration : current.indexed[slot]) {
+                        registration.collect(changes, i);
+                    }
+                }
+                for (Registration registration : current.predicates) {
+                    if (registration.filter.matches(spotId)) {
+                        registration.collect(changes, i);
+                    }
+                }
+            }
+
+            for (Registration registration : current.filtered) {
+                if (!registration.pending.isEmpty()) {
+                    deliver(registration, registration.pending);
+                }
+            }
+        } finally {
+            // Ningún lote a medio entregar puede mezclarse con la entrega siguiente
+            for (Registration registration : current.filtered) {
+                registration.pending.clear();
+            }
+        }
+    }
+
+    private static void deliver(Registration registration, SpotChangeSet changes) {
+        try {
+            registration.observer.onChanges(changes);
+        } catch (RuntimeException e) {
+            log.warn("Observer {} failed on a batch of {} changes: {}",
+                    registration.observer, changes.size(), e.toString());
+        }
+    }
+
+    /**
+     * Un observador con su filtro. Sirve de clave para darlo de baja.
+     */
+    public static final class Registration {
+
+        private final ParkingObserver observer;
+        private final SpotFilter filter;
+        // Cambios de la entrega en curso que pasan el filtro
+        private final SpotChangeSet pending = new SpotChangeSet(4);
+
+        private Registration(ParkingObserver observer, SpotFilter filter) {
+            this.observer = observer;
+            this.filter = filter;
+        }
+
+        private void collect(SpotChangeSet changes, int index) {
+            pending.add(changes.spotId(index), changes.oldStatusOrdinal(index), changes.newStatusOrdinal(index));
+        }
+
+        public ParkingObserver getObserver() {
+            return observer;
+        }
+
+        public SpotFilter getFilter() {
+            return filter;
+        }
+    }
+
+    /**
+     * Foto inmutable de las suscripciones. El índice por plaza son dos arrays paralelos:
+     * ids ordenados y, para cada uno, las suscripciones que lo incluyen.
+     */
+    private static final class Snapshot {
+
+        private static final Snapshot EMPTY = new Snapshot(NO_REGISTRATIONS, NO_REGISTRATIONS, NO_REGISTRATIONS,
+                NO_REGISTRATIONS, new int[0], new Registration[0][]);
+
+        private final Registration[] registrations;
+        private final Registration[] whole;
+        private final Registration[] predicates;
+        private final Registration[] filtered;
+        private final int[] indexedIds;
+        private final Registration[][] indexed;
+
+        private Snapshot(Registration[] registrations, Registration[] whole, Registration[] predicates,
+                         Registration[] filtered, int[] indexedIds, Registration[][] indexed) {
+            this.registrations = registrations;
+            this.whole = whole;
+            this.predicates = predicates;
+            this.filtered = filtered;
+            this.indexedIds = indexedIds;
+            this.indexed = indexed;
+        }
+
+        private static Snapshot of(List<Registration> registrations) {
+            List<Registration> whole = new ArrayList<>();
+            List<Registration> predicates = new ArrayList<>();
+            List<Registration> filtered = new ArrayList<>();
+            List<long[]> pairs = new ArrayList<>();
+            List<Registration> byPair = new ArrayList<>();
+
+            for (Registration registration : registrations) {
+                SpotFilter filter = registration.filter;
+                if (filter.isAll()) {
+                    whole.add(registration);
+                    continue;
+                }
+                filtered.add(registration);
+                int[] ids = filter.idsView();
+                if (ids == null) {
+                    predicates.add(registration);
+                    continue;
+                }
+                for (int id : ids) {
+                    // (id, orden de alta) para agrupar por plaza conservando el orden de registro
+                    pairs.add(new long[] {id, byPair.size()});
+                    byPair.add(registration);
+                }
+            }
+
+            pairs.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+            int[] ids = new int[pairs.size()];
+            Registration[][] indexed = new Registration[pairs.size()][];
+            int groups = 0;
+            for (int i = 0; i < pairs.size(); ) {
+                int id = (int) pairs.get(i)[0];
+                int end = i;
+                while (end < pairs.size() && pairs.get(end)[0] == id) {
+                    end++;
+                }
+                Registration[] group = new Registration[end - i];
+                for (int k = i; k < end; k++) {
+                    group[k - i] = byPair.get((int) pairs.get(k)[1]);
+                }
+                ids[groups] = id;
+                indexed[groups++] = group;
+                i = end;
+            }
+
+            return new Snapshot(
+                    registrations.toArray(NO_REGISTRATIONS),
+                    whole.toArray(NO_REGISTRATIONS),
+                    predicates.toArray(NO_REGISTRATIONS),
+                    filtered.toArray(NO_REGISTRATIONS),
+                    Arrays.copyOf(ids, groups),
+                    Arrays.copyOf(indexed, groups)
+            );
+        }
+    }
+}
@@ -2,6 +2,7 @@ package smartparking.observers;
 
 import smartparking.model.ParkingSpot;
 import smartparking.observer.ParkingObserver;
+import smartparking.observer.SpotChangeSet;
 import smartparking.service.ParkingActivityLog;
 
 /**
@@ -24,4 +25,9 @@ public class ActivityLogObserver implements ParkingObserver {
                 "Cambio de estado"
         );
     }
+
+    @Override
+    public void onChanges(SpotChangeSet changes) {
+        activityLog.recordSpotChanges(changes, "core", "Cambio de estado");
+    }
 }
@@ -2,7 +2,11 @@ package smartparking.observers;
 
 import smartparking.model.ParkingSpot;
 import smartparking.model.SpotStatus;
+import smartparking.observer.ObserverEventSink;
 import smartparking.observer.ParkingObserver;
+import smartparking.observer.SpotChangeSet;
+
+import java.util.Map;
 
 /**
  * Observador que simula una notificación a un móvil.
@@ -11,19 +15,32 @@ import smartparking.observer.ParkingObserver;
 public class MobileNotifierObserver implements ParkingObserver {
 
     private final int interestedSpotId;
+    private final ObserverEventSink sink;
 
-    public MobileNotifierObserver(int interestedSpotId) {
+    public MobileNotifierObserver(int interestedSpotId, ObserverEventSink sink) {
         this.interestedSpotId = interestedSpotId;
+        this.sink = sink;
     }
 
     @Override
     public void update(ParkingSpot spot) {
-        if (spot.getId() == interestedSpotId && spot.getStatus() == SpotStatus.FREE) {
-            System.out.println("[MobileNotifier] Notificación al usuario: "
-                    + "¡La plaza " + spot.getId() + " se ha liberado!");
-        } else if (spot.getId() == interestedSpotId) {
-            System.out.println("[MobileNotifier] Plaza " + spot.getId()
-                    + " ahora está " + spot.getStatus());
+        if (spot.getId() != interestedSpotId) {
+            return;
+        }
+        String message = spot.getStatus() == SpotStatus.FREE
+                ? "Notificación al usuario: ¡La plaza " + spot.getId() + " se ha liberado!"
+                : "Plaza " + spot.getId() + " ahora está " + spot.getStatus();
+        sink.emit("mobile", "mobile.notification", message,
+                Map.of("spotId", spot.getId(), "status", spot.getStatus()));
+    }
+
+    @Override
+    public void onChanges(SpotChangeSet changes) {
+        // Solo interesa una plaza: se busca en el lote sin crear objetos por cambio
+        for (int i = 0; i < changes.size(); i++) {
+            if (changes.spotId(i) == interestedSpotId) {
+                update(new ParkingSpot(interestedSpotId, changes.newStatus(i)));
+            }
         }
     }
 }
@@ -2,7 +2,11 @@ package smartparking.observers;
 
 import smartparking.model.ParkingSpot;
 import smartparking.model.SpotStatus;
+import smartparking.observer.ObserverEventSink;
 import smartparking.observer.ParkingObserver;
+import smartparking.observer.SpotChangeSet;
+
+import java.util.Map;
 
 /**
  * Observador que simula un módulo de seguridad.
@@ -10,19 +14,45 @@ import smartparking.observer.ParkingObserver;
  */
 public class SecurityModuleObserver implements ParkingObserver {
 
+    private static final String SOURCE = "security";
+
+    private final ObserverEventSink sink;
+
+    public SecurityModuleObserver(ObserverEventSink sink) {
+        this.sink = sink;
+    }
+
     @Override
     public void update(ParkingSpot spot) {
         if (spot.getStatus() == SpotStatus.OUT_OF_SERVICE) {
-            System.out.println("[SecurityModule] ALERTA: "
-                    + "La plaza " + spot.getId()
-                    + " ha pasado a estado OUT_OF_SERVICE. "
-                    + "Enviar técnico o revisar incidente.");
+            sink.alert(SOURCE, "security.alert",
+                    "ALERTA: La plaza " + spot.getId() + " ha pasado a estado OUT_OF_SERVICE. "
+                            + "Enviar técnico o revisar incidente.",
+                    Map.of("spotId", spot.getId()));
         } else {
-            System.out.println("[SecurityModule] Notificación: "
-                    + "Cambio en plaza " + spot.getId()
-                    + " -> " + spot.getStatus());
+            sink.emit(SOURCE, "security.change",
+                    "Notificación: Cambio en plaza " + spot.getId() + " -> " + spot.getStatus(),
+                    Map.of("spotId", spot.getId(), "status", spot.getStatus()));
         }
     }
-}
-
 
+    @Override
+    public void onChanges(SpotChangeSet changes) {
+        if (changes.size() == 1) {
+            update(new ParkingSpot(changes.spotId(0), changes.newStatus(0)));
+            return;
+        }
+        int outOfService = changes.countTo(SpotStatus.OUT_OF_SERVICE);
+        if (outOfService > 0) {
+            sink.alert(SOURCE, "security.alert",
+                    "ALERTA: " + outOfService + " plazas han pasado a estado OUT_OF_SERVICE. "
+                            + "Enviar técnico o revisar incidente.",
+                    Map.of("outOfService", outOfService));
+        }
+        if (outOfService < changes.size()) {
+            sink.emit(SOURCE, "security.change",
+                    "Notificación: " + (changes.size() - outOfService) + " plazas han cambiado de estado",
+                    Map.of("changed", changes.size() - outOfService));
+        }
+    }
+}
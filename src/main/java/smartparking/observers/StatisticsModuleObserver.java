@@ -3,7 +3,11 @@ package smartparking.observers;
 import smartparking.model.ParkingLot;
 import smartparking.model.ParkingSpot;
 import smartparking.model.SpotStatus;
+import smartparking.observer.ObserverEventSink;
 import smartparking.observer.ParkingObserver;
+import smartparking.observer.SpotChangeSet;
+
+import java.util.Map;
 
 /**
  * Observador que calcula estadísticas simples del estado del parking.
@@ -11,25 +15,53 @@ import smartparking.observer.ParkingObserver;
 public class StatisticsModuleObserver implements ParkingObserver {
 
     private final ParkingLot parkingLot;
+    private final ObserverEventSink sink;
 
     private int totalChanges = 0;
 
-    public StatisticsModuleObserver(ParkingLot parkingLot) {
+    public StatisticsModuleObserver(ParkingLot parkingLot, ObserverEventSink sink) {
         this.parkingLot = parkingLot;
+        this.sink = sink;
     }
 
     @Override
     public void update(ParkingSpot spot) {
         totalChanges++;
 
-        long occupied = parkingLot.getSpots().stream()
-                .filter(s -> s.getStatus() == SpotStatus.OCCUPIED)
-                .count();
+        ParkingLot.Occupancy occupancy = parkingLot.getOccupancy();
 
-        System.out.println("[StatisticsModule] Cambio #" + totalChanges
-                + ": Plaza " + spot.getId() + " ahora está " + spot.getStatus()
-                + ". Ocupadas totales: " + occupied + "/" + parkingLot.getSpots().size());
+        sink.emit("statistics", "statistics.change",
+                "Cambio #" + totalChanges + ": Plaza " + spot.getId() + " ahora está " + spot.getStatus()
+                        + ". Ocupadas totales: " + occupancy.occupied() + "/" + occupancy.total(),
+                Map.of(
+                        "totalChanges", totalChanges,
+                        "spotId", spot.getId(),
+                        "status", spot.getStatus(),
+                        "occupied", occupancy.occupied(),
+                        "total", occupancy.total()
+                ));
     }
-}
 
+    @Override
+    public void onChanges(SpotChangeSet changes) {
+        totalChanges += changes.size();
+
+        ParkingLot.Occupancy occupancy = parkingLot.getOccupancy();
+        int freed = changes.countTo(SpotStatus.FREE);
+        int taken = changes.countTo(SpotStatus.OCCUPIED);
 
+        sink.emit("statistics", "statistics.batch",
+                "Cambios #" + (totalChanges - changes.size() + 1) + "-" + totalChanges
+                        + ": " + changes.size() + " plazas cambiadas en " + parkingLot.getName()
+                        + " (" + freed + " liberadas, " + taken + " ocupadas)"
+                        + ". Ocupadas totales: " + occupancy.occupied() + "/" + occupancy.total(),
+                Map.of(
+                        "lot", parkingLot.getName(),
+                        "totalChanges", totalChanges,
+                        "changed", changes.size(),
+                        "freed", freed,
+                        "occupied", occupancy.occupied(),
+                        "total", occupancy.total()
+                ));
+    }
+}
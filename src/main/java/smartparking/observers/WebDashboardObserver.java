@@ -2,8 +2,11 @@ package smartparking.observers;
 
 import smartparking.model.ParkingLot;
 import smartparking.model.ParkingSpot;
-import smartparking.model.SpotStatus;
+import smartparking.observer.ObserverEventSink;
 import smartparking.observer.ParkingObserver;
+import smartparking.observer.SpotChangeSet;
+
+import java.util.Map;
 
 /**
  * Observador que simula un panel web en tiempo real.
@@ -11,32 +14,44 @@ import smartparking.observer.ParkingObserver;
 public class WebDashboardObserver implements ParkingObserver {
 
     private final ParkingLot parkingLot;
+    private final ObserverEventSink sink;
 
-    public WebDashboardObserver(ParkingLot parkingLot) {
+    public WebDashboardObserver(ParkingLot parkingLot, ObserverEventSink sink) {
         this.parkingLot = parkingLot;
+        this.sink = sink;
     }
 
     @Override
     public void update(ParkingSpot spot) {
-        System.out.println("[WebDashboard] Actualización recibida: "
-                + "Plaza " + spot.getId() + " -> " + spot.getStatus());
-
-        long free = parkingLot.getSpots().stream()
-                .filter(s -> s.getStatus() == SpotStatus.FREE)
-                .count();
-        long occupied = parkingLot.getSpots().stream()
-                .filter(s -> s.getStatus() == SpotStatus.OCCUPIED)
-                .count();
-        long outOfService = parkingLot.getSpots().stream()
-                .filter(s -> s.getStatus() == SpotStatus.OUT_OF_SERVICE)
-                .count();
-
-        System.out.println("[WebDashboard] Resumen actual: "
-                + "Libres=" + free
-                + ", Ocupadas=" + occupied
-                + ", Avería=" + outOfService);
-        System.out.println("--------------------------------------------------");
+        publishSummary("Plaza " + spot.getId() + " -> " + spot.getStatus(), 1);
     }
-}
 
+    @Override
+    public void onChanges(SpotChangeSet changes) {
+        if (changes.size() == 1) {
+            update(new ParkingSpot(changes.spotId(0), changes.newStatus(0)));
+            return;
+        }
+        publishSummary(changes.size() + " plazas cambiadas en " + parkingLot.getName(), changes.size());
+    }
 
+    /**
+     * Un único evento por actualización, con el cambio y el resumen del parking.
+     */
+    private void publishSummary(String change, int changed) {
+        ParkingLot.Occupancy occupancy = parkingLot.getOccupancy();
+
+        sink.emit("dashboard", "dashboard.summary",
+                "Actualización recibida: " + change + ". Resumen actual: "
+                        + "Libres=" + occupancy.free()
+                        + ", Ocupadas=" + occupancy.occupied()
+                        + ", Avería=" + occupancy.outOfService(),
+                Map.of(
+                        "lot", parkingLot.getName(),
+                        "changed", changed,
+                        "free", occupancy.free(),
+                        "occupied", occupancy.occupied(),
+                        "outOfService", occupancy.outOfService()
+                ));
+    }
+}
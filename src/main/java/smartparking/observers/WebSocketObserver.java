@@ -1,35 +1,115 @@
 package smartparking.observers;
 
-import org.springframework.messaging.simp.SimpMessagingTemplate;
+import smartparking.model.ParkingLot;
 import smartparking.model.ParkingSpot;
 import smartparking.observer.ParkingObserver;
+import smartparking.observer.SpotChangeSet;
+import smartparking.service.ParkingService;
+import smartparking.web.ParkingDeltaFrame;
+import smartparking.web.ParkingDeltaPublisher;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Observador que publica las actualizaciones del parking vía WebSocket.
+ *
+ * Acumula las transiciones durante una ventana y envía un único {@link ParkingDeltaFrame} por tick
+ * con el último estado de cada plaza cambiada, así el broker serializa y enmarca un mensaje por
+ * cliente y tick en lugar de uno por cambio. Con ventana 0 se envía un frame por lote recibido
+ * (un ciclo del feed o un cambio manual).
  */
 public class WebSocketObserver implements ParkingObserver {
 
-    private final SimpMessagingTemplate messagingTemplate;
+    private static final byte NOT_PENDING = -1;
 
-    public WebSocketObserver(SimpMessagingTemplate messagingTemplate) {
-        this.messagingTemplate = messagingTemplate;
+    private final ParkingDeltaPublisher publisher;
+    private final ParkingLot parkingLot;
+    private final long windowMillis;
+
+    // Plazas pendientes en orden de llegada y último estado de cada una, indexado por id
+    private int[] pendingIds = new int[64];
+    private int pendingCount;
+    private byte[] pendingStatus = new byte[0];
+    private long sequence;
+
+    public WebSocketObserver(ParkingDeltaPublisher publisher, ParkingLot parkingLot, long windowMillis) {
+        this.publisher = publisher;
+        this.parkingLot = parkingLot;
+        this.windowMillis = Math.max(0, windowMillis);
+        if (this.windowMillis > 0) {
+            ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "websocket-delta-ticker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::flush, this.windowMillis, this.windowMillis, TimeUnit.MILLISECONDS);
+        }
     }
 
     @Override
     public void update(ParkingSpot spot) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("spotId", spot.getId());
-        message.put("status", spot.getStatus().toString());
-        message.put("timestamp", LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        synchronized (this) {
+            collect(spot.getId(), (byte) spot.getStatus().ordinal());
+        }
+        if (windowMillis == 0) {
+            flush();
+        }
+    }
 
-        // Publica el mensaje a todos los clientes conectados
-        messagingTemplate.convertAndSend("/topic/parking-updates", message);
+    @Override
+    public void onChanges(SpotChangeSet changes) {
+        synchronized (this) {
+            for (int i = 0; i < changes.size(); i++) {
+                collect(changes.spotId(i), changes.newStatusOrdinal(i));
+            }
+        }
+        if (windowMillis == 0) {
+            flush();
+        }
     }
-}
 
+    private void collect(int spotId, byte status) {
+        if (spotId < 0) {
+            return;
+        }
+        if (spotId >= pendingStatus.length) {
+            int oldLength = pendingStatus.length;
+            pendingStatus = Arrays.copyOf(pendingStatus, Math.max(spotId + 1, oldLength * 2));
+            Arrays.fill(pendingStatus, oldLength, pendingStatus.length, NOT_PENDING);
+        }
+        if (pendingStatus[spotId] == NOT_PENDING) {
+            if (pendingCount == pendingIds.length) {
+                pendingIds = Arrays.copyOf(pendingIds, pendingCount * 2);
+            }
+            pendingIds[pendingCount++] = spotId;
+        }
+        // Si la plaza ya estaba pendiente solo cuenta su último estado
+        pendingStatus[spotId] = status;
+    }
 
+    /**
+     * Cierra el tick: si hubo cambios, envía un frame con ellos y los contadores actuales.
+     */
+    void flush() {
+        ParkingDeltaFrame frame;
+        synchronized (this) {
+            if (pendingCount == 0) {
+                return;
+            }
+            int[] ids = Arrays.copyOf(pendingIds, pendingCount);
+            byte[] statuses = new byte[pendingCount];
+            for (int i = 0; i < pendingCount; i++) {
+                statuses[i] = pendingStatus[ids[i]];
+                pendingStatus[ids[i]] = NOT_PENDING;
+            }
+            pendingCount = 0;
+            frame = new ParkingDeltaFrame(++sequence, System.currentTimeMillis(), ids, statuses,
+                    ParkingService.ParkingStatistics.of(parkingLot));
+        }
+        // Publica el frame a todos los clientes conectados, en el formato de cada uno
+        publisher.publish(frame);
+    }
+}
@@ -6,4 +6,5 @@ import smartparking.model.Carpark;
 
 @Repository
 public interface CarparkRepository extends JpaRepository<Carpark, String> {
+    long countByLatitudeIsNull();
 }
@@ -2,10 +2,13 @@ package smartparking.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import smartparking.model.ParkingHistoryEntity;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public interface ParkingHistoryRepository extends JpaRepository<ParkingHistoryEntity, Long> {
     List<ParkingHistoryEntity> findByCarparkIdOrderByTimestampAsc(String carparkId);
+    List<ParkingHistoryEntity> findByCarparkIdAndTimestampGreaterThanEqualOrderByTimestampAsc(
+            String carparkId, LocalDateTime since);
     Optional<ParkingHistoryEntity> findTopByCarparkIdOrderByTimestampDesc(String carparkId);
 }
@@ -0,0 +1,143 @@
+package smartparking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Calcula cuándo volver a pedir el feed a partir de la cadencia con la que publica data.gov.sg.
+ *
+ * El intervalo de publicación se estima con una media móvil de las diferencias entre los
+ * update_datetime más recientes de payloads consecutivos. El desfase entre el reloj de la fuente
+ * y el local se aproxima con el menor retraso observado, así que la siguiente petición se programa
+ * justo después de la publicación esperada. Si la publicación se retrasa se reintenta en pasos cortos
+ * y crecientes; si el fetch falla se espera con backoff exponencial.
+ *
+ * Con {@code parking.feed.source=replay} a velocidad N las marcas de tiempo avanzan N veces más
+ * deprisa que el reloj: se dividen entre N para que intervalo y desfase queden en tiempo real.
+ * Los límites {@code min/max-interval-ms} siguen siendo de tiempo real, así que a velocidades
+ * altas el sondeo se queda en {@code min-interval-ms} y se saltan ciclos. Con velocidad 0 no hay
+ * reloj que seguir: hay que desactivar {@code adaptive}.
+ *
+ * No es thread-safe: la usa solo el hilo que refresca el feed.
+ */
+@Component
+public class AdaptivePollSchedule {
+
+    private static final double SMOOTHING = 0.3;
+
+    private final boolean adaptive;
+    private final long defaultIntervalMs;
+    private final long minIntervalMs;
+    private final long maxIntervalMs;
+    private final long publishMarginMs;
+    private final long maxBackoffMs;
+    // Milisegundos de la fuente por milisegundo real (velocidad del replay; 1 en vivo)
+    private final double timeScale;
+
+    private double intervalMs;
+    private long lastPublished;
+    private long clockOffsetMs = Long.MAX_VALUE;
+    private int failures;
+    private int misses;
+
+    public AdaptivePollSchedule(
+            @Value("${parking.feed.poll.adaptive:true}") boolean adaptive,
+            @Value("${parking.update-interval-ms:30000}") long defaultIntervalMs,
+            @Value("${parking.feed.poll.min-interval-ms:5000}") long minIntervalMs,
+            @Value("${parking.feed.poll.max-interval-ms:300000}") long maxIntervalMs,
+            @Value("${parking.feed.poll.publish-margin-ms:3000}") long publishMarginMs,
+            @Value("${parking.feed.poll.max-backoff-ms:300000}") long maxBackoffMs,
+            @Value("${parking.feed.source:live}") String feedSource,
+            @Value("${parking.feed.replay.speed:1}") double replaySpeed
+    ) {
+        this.adaptive = adaptive;
+        this.defaultIntervalMs = Math.max(1, defaultIntervalMs);
+        this.minIntervalMs = Math.max(1, Math.min(minIntervalMs, this.defaultIntervalMs));
+        this.maxIntervalMs = Math.max(this.defaultIntervalMs, maxIntervalMs);
+        this.publishMarginMs = Math.max(0, publishMarginMs);
+        this.maxBackoffMs = Math.max(this.minIntervalMs, maxBackoffMs);
+        this.timeScale = "replay".equals(feedSource) && replaySpeed > 0 ? replaySpeed : 1;
+        // La estimación inicial es la cadencia de la fuente, que en un replay acelerado va más deprisa
+        this.intervalMs = clamp(this.defaultIntervalMs / timeScale, this.minIntervalMs, this.maxIntervalMs);
+    }
+
+    /**
+     * Registra un payload recibido. Devuelve false si su marca de tiempo no avanzó
+     * respecto al último procesado (mismo ciclo publicado otra vez).
+     */
+    public boolean onPayload(long publishedMillis, long nowMillis) {
+        failures = 0;
+        if (publishedMillis <= lastPublished) {
+            misses++;
+            return false;
+        }
+
+        if (lastPublished > 0) {
+            double delta = (publishedMillis - lastPublished) / timeScale;
+            // Sin sondeos intermedios puede haberse saltado alguna publicación y el salto equivale
+            // a varios intervalos; si hubo sondeos sin novedad, el salto es un único intervalo
+            long cycles = misses == 0 ? Math.max(1, Math.round(delta / intervalMs)) : 1;
+            double sample = delta / cycles;
+            intervalMs = clamp(intervalMs + SMOOTHING * (sample - intervalMs), minIntervalMs, maxIntervalMs);
+        }
+        clockOffsetMs = Math.min(clockOffsetMs, nowMillis - toLocalClock(publishedMillis));
+        lastPublished = publishedMillis;
+        misses = 0;
+        return true;
+    }
+
+    public void onFailure() {
+        failures++;
+    }
+
+    /**
+     * Espera hasta la próxima petición.
+     */
+    public long nextDelayMillis(long nowMillis) {
+        if (failures > 0) {
+            long backoff = minIntervalMs << Math.min(failures - 1, 20);
+            long capped = Math.min(maxBackoffMs, backoff);
+            // Jitter para no sincronizar reintentos con otros clientes tras una caída general
+            return capped + ThreadLocalRandom.current().nextLong(capped / 10 + 1);
+        }
+        if (!adaptive) {
+            return defaultIntervalMs;
+        }
+        if (lastPublished == 0) {
+            return Math.round(intervalMs);
+        }
+
+        long expected = toLocalClock(lastPublished) + clockOffsetMs + Math.round(intervalMs) + publishMarginMs;
+        long delay = expected - nowMillis;
+        if (delay <= 0) {
+            // Publicación atrasada: sondeos cortos que se alargan mientras siga sin llegar
+            delay = minIntervalMs * (1L + misses);
+        }
+        return clamp(delay, minIntervalMs, maxIntervalMs);
+    }
+
+    private long toLocalClock(long publishedMillis) {
+        return timeScale == 1 ? publishedMillis : Math.round(publishedMillis / timeScale);
+    }
+
+    /**
+     * Intervalo de publicación estimado, en tiempo real.
+     */
+    public long estimatedIntervalMillis() {
+        return Math.round(intervalMs);
+    }
+
+    public int consecutiveFailures() {
+        return failures;
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
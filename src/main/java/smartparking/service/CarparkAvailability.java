@@ -0,0 +1,14 @@
+package smartparking.service;
+
+import java.time.Instant;
+
+/**
+ * Disponibilidad agregada de un carpark, leída del almacén columnar.
+ */
+public record CarparkAvailability(
+        String carparkNumber,
+        Instant updatedAt,
+        int totalLots,
+        int availableLots
+) {
+}
@@ -0,0 +1,296 @@
+package smartparking.service;
+
+import smartparking.integration.CarparkSnapshot;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Almacén columnar de disponibilidad indexado por el id denso del carpark.
+ * Guarda columnas primitivas por tipo de plaza y agregadas (calculadas una vez al ingerir),
+ * más la marca de tiempo de cada carpark: unos 70 bytes por carpark frente a los objetos
+ * anidados de {@link CarparkSnapshot}.
+ *
+ * Un único hilo escribe (el del feed); las lecturas usan lectura optimista de {@link StampedLock}.
+ */
+public class CarparkAvailabilityStore {
+
+    /**
+     * Tipos de plaza publicados por data.gov.sg: coches, motos, pesados, carga, etc.
+     * Otros códigos solo cuentan en los agregados.
+     */
+    public static final String[] LOT_TYPES = {"C", "Y", "H", "L", "M", "S"};
+
+    /**
+     * Tipo con el que {@link #toSnapshot} exporta la parte de los agregados que no es de
+     * {@link #LOT_TYPES}, para que un snapshot reingerido (checkpoint) dé los mismos totales.
+     */
+    public static final String OTHER_LOT_TYPE = "OTHER";
+
+    private static final long ABSENT = 0L;
+
+    public enum Outcome { NEW, CHANGED, REFRESHED, UNCHANGED, STALE }
+
+    private final StampedLock lock = new StampedLock();
+
+    private int[][] typeTotal = new int[LOT_TYPES.length][0];
+    private int[][] typeAvailable = new int[LOT_TYPES.length][0];
+    private byte[] typeMask = new byte[0];
+    private int[] total = new int[0];
+    private int[] available = new int[0];
+    private long[] updatedAt = new long[0];
+    private int count;
+
+    // Buffers del escritor para comparar antes de tocar las columnas
+    private final int[] scratchTotal = new int[LOT_TYPES.length];
+    private final int[] scratchAvailable = new int[LOT_TYPES.length];
+
+    public long beginWrite() {
+        return lock.writeLock();
+    }
+
+    public void endWrite(long stamp) {
+        lock.unlockWrite(stamp);
+    }
+
+    /**
+     * Compara el snapshot con la fila del carpark y la actualiza si procede.
+     * Debe llamarse entre {@link #beginWrite()} y {@link #endWrite(long)}.
+     */
+    public Outcome upsert(int id, CarparkSnapshot snapshot) {
+        ensureCapacity(id + 1);
+
+        Arrays.fill(scratchTotal, 0);
+        Arrays.fill(scratchAvailable, 0);
+        int mask = 0;
+        int sumTotal = 0;
+        int sumAvailable = 0;
+        for (CarparkSnapshot.CarparkTypeInfo info : snapshot.types()) {
+            sumTotal += info.totalLots();
+            sumAvailable += info.availableLots();
+            int type = typeIndex(info.lotType());
+            if (type >= 0) {
+                scratchTotal[type] += info.totalLots();
+                scratchAvailable[type] += info.availableLots();
+                mask |= 1 << type;
+            }
+        }
+
+        long timestamp = snapshot.updatedAt().toEpochMilli();
+        long previous = updatedAt[id];
+        Outcome outcome;
+        if (previous == ABSENT) {
+            outcome = Outcome.NEW;
+            count++;
+        } else if (timestamp < previous) {
+            return Outcome.STALE;
+        } else if (sameCounts(id, mask, sumTotal, sumAvailable)) {
+            if (timestamp == previous) {
+                return Outcome.UNCHANGED;
+            }
+            updatedAt[id] = timestamp;
+            return Outcome.REFRESHED;
+        } else {
+            outcome = Outcome.CHANGED;
+        }
+
+        for (int t = 0; t < LOT_TYPES.length; t++) {
+            typeTotal[t][id] = scratchTotal[t];
+            typeAvailable[t][id] = scratchAvailable[t];
+        }
+        typeMask[id] = (byte) mask;
+        total[id] = sumTotal;
+        available[id] = sumAvailable;
+        updatedAt[id] = timestamp == ABSENT ? 1 : timestamp;
+        return outcome;
+    }
+
+    /**
+     * Borra la fila del carpark. Debe llamarse entre {@link #beginWrite()} y {@link #endWrite(long)}.
+     */
+    public boolean remove(int id) {
+        if (id < 0 || id >= updatedAt.length || updatedAt[id] == ABSENT) {
+            return false;
+        }
+        for (int t = 0; t < LOT_TYPES.length; t++) {
+            typeTotal[t][id] = 0;
+            typeAvailable[t][id] = 0;
+        }
+        typeMask[id] = 0;
+        total[id] = 0;
+        available[id] = 0;
+        updatedAt[id] = ABSENT;
+        count--;
+        return true;
+    }
+
+    private boolean sameCounts(int id, int mask, int sumTotal, int sumAvailable) {
+        if (typeMask[id] != (byte) mask || total[id] != sumTotal || available[id] != sumAvailable) {
+            return false;
+        }
+        for (int t = 0; t < LOT_TYPES.length; t++) {
+            if (typeTotal[t][id] != scratchTotal[t] || typeAvailable[t][id] != scratchAvailable[t]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= updatedAt.length) {
+            return;
+        }
+        int capacity = Math.max(size, Math.max(64, updatedAt.length * 2));
+        for (int t = 0; t < LOT_TYPES.length; t++) {
+            typeTotal[t] = Arrays.copyOf(typeTotal[t], capacity);
+            typeAvailable[t] = Arrays.copyOf(typeAvailable[t], capacity);
+        }
+        typeMask = Arrays.copyOf(typeMask, capacity);
+        total = Arrays.copyOf(total, capacity);
+        available = Arrays.copyOf(available, capacity);
+        updatedAt = Arrays.copyOf(updatedAt, capacity);
+    }
+
+    private static int typeIndex(String lotType) {
+        if (lotType == null) {
+            return -1;
+        }
+        for (int t = 0; t < LOT_TYPES.length; t++) {
+            if (LOT_TYPES[t].equals(lotType)) {
+                return t;
+            }
+        }
+        return -1;
+    }
+
+    public boolean contains(int id) {
+        return updatedAtMillis(id) != ABSENT;
+    }
+
+    public int totalLots(int id) {
+        long stamp = lock.tryOptimisticRead();
+        int value = id >= 0 && id < total.length ? total[id] : 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = id >= 0 && id < total.length ? total[id] : 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    public int availableLots(int id) {
+        long stamp = lock.tryOptimisticRead();
+        int value = id >= 0 && id < available.length ? available[id] : 0;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = id >= 0 && id < available.length ? available[id] : 0;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    private long updatedAtMillis(int id) {
+        long stamp = lock.tryOptimisticRead();
+        long value = id >= 0 && id < updatedAt.length ? updatedAt[id] : ABSENT;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = id >= 0 && id < updatedAt.length ? updatedAt[id] : ABSENT;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Fila agregada de un carpark, o null si no hay datos.
+     */
+    public CarparkAvailability get(int id, String carparkNumber) {
+        long stamp = lock.tryOptimisticRead();
+        CarparkAvailability row = readRow(id, carparkNumber);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                row = readRow(id, carparkNumber);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return row;
+    }
+
+    private CarparkAvailability readRow(int id, String carparkNumber) {
+        long[] timestamps = updatedAt;
+        int[] totals = total;
+        int[] availables = available;
+        if (id < 0 || id >= timestamps.length || id >= totals.length || id >= availables.length
+                || timestamps[id] == ABSENT) {
+            return null;
+        }
+        return new CarparkAvailability(carparkNumber, Instant.ofEpochMilli(timestamps[id]), totals[id], availables[id]);
+    }
+
+    /**
+     * Reconstruye el snapshot con el desglose por tipo (para /feed y checkpoints).
+     */
+    public CarparkSnapshot toSnapshot(int id, String carparkNumber) {
+        long stamp = lock.readLock();
+        try {
+            if (id < 0 || id >= updatedAt.length || updatedAt[id] == ABSENT) {
+                return null;
+            }
+            List<CarparkSnapshot.CarparkTypeInfo> types = new ArrayList<>(2);
+            int otherTotal = total[id];
+            int otherAvailable = available[id];
+            for (int t = 0; t < LOT_TYPES.length; t++) {
+                if ((typeMask[id] & (1 << t)) != 0) {
+                    types.add(new CarparkSnapshot.CarparkTypeInfo(LOT_TYPES[t], typeTotal[t][id], typeAvailable[t][id]));
+                    otherTotal -= typeTotal[t][id];
+                    otherAvailable -= typeAvailable[t][id];
+                }
+            }
+            if (otherTotal != 0 || otherAvailable != 0) {
+                types.add(new CarparkSnapshot.CarparkTypeInfo(OTHER_LOT_TYPE, otherTotal, otherAvailable));
+            }
+            return new CarparkSnapshot(carparkNumber, Instant.ofEpochMilli(updatedAt[id]), List.copyOf(types));
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Número de ids que pueden tener fila: todos los ids con datos están en [0, capacity).
+     */
+    public int capacity() {
+        long stamp = lock.tryOptimisticRead();
+        int value = updatedAt.length;
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                value = updatedAt.length;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return value;
+    }
+
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+}
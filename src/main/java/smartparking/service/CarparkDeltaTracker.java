@@ -0,0 +1,158 @@
+package smartparking.service;
+
+import smartparking.integration.CarparkIdDictionary;
+import smartparking.integration.CarparkSnapshot;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Etapa de diff del feed: compara cada ciclo con el último estado conocido por carpark
+ * y devuelve solo los que cambiaron de ocupación.
+ * Las actualizaciones con update_datetime anterior al ya conocido se descartan.
+ * Un carpark que falta en {@code expireAfterCycles} ciclos seguidos (un ciclo vacío, como una caída
+ * del feed, también cuenta) se borra y sale en {@link ChangeSet#expired()}, para no seguir sirviendo
+ * una disponibilidad que ya nadie actualiza.
+ * El estado vive en un {@link CarparkAvailabilityStore} indexado por el id de {@link CarparkIdDictionary}.
+ */
+public class CarparkDeltaTracker {
+
+    private final CarparkIdDictionary dictionary;
+    private final CarparkAvailabilityStore store = new CarparkAvailabilityStore();
+    private final int expireAfterCycles;
+
+    // Ciclo en que se vio cada carpark por última vez, indexado por id
+    private long[] lastSeen = new long[0];
+    private long cycle;
+
+    public CarparkDeltaTracker(CarparkIdDictionary dictionary, int expireAfterCycles) {
+        this.dictionary = dictionary;
+        this.expireAfterCycles = Math.max(1, expireAfterCycles);
+    }
+
+    /**
+     * Incorpora un ciclo completo del feed. Solo un hilo debe llamar a este método a la vez.
+     */
+    public ChangeSet apply(List<CarparkSnapshot> feed) {
+        int[] changedIds = new int[16];
+        int changed = 0;
+        int stale = 0;
+        int refreshed = 0;
+        int[] expired;
+
+        long stamp = store.beginWrite();
+        try {
+            cycle++;
+            for (CarparkSnapshot snapshot : feed) {
+                int id = dictionary.intern(snapshot.carparkNumber());
+                markSeen(id);
+                switch (store.upsert(id, snapshot)) {
+                    case NEW, CHANGED -> {
+                        if (changed == changedIds.length) {
+                            changedIds = Arrays.copyOf(changedIds, changed * 2);
+                        }
+                        changedIds[changed++] = id;
+                    }
+                    // Dato fuera de orden o repetido de una publicación anterior
+                    case STALE -> stale++;
+                    // Misma ocupación con marca de tiempo más reciente: solo avanza la fecha
+                    case REFRESHED -> refreshed++;
+                    case UNCHANGED -> { }
+                }
+            }
+            expired = expireMissing();
+        } finally {
+            store.endWrite(stamp);
+        }
+
+        return new ChangeSet(Arrays.copyOf(changedIds, changed), expired, feed.size(), stale, refreshed);
+    }
+
+    private void markSeen(int id) {
+        if (id >= lastSeen.length) {
+            lastSeen = Arrays.copyOf(lastSeen, Math.max(id + 1, dictionary.size()));
+        }
+        lastSeen[id] = cycle;
+    }
+
+    private int[] expireMissing() {
+        int[] expired = new int[0];
+        int count = 0;
+        // Con el cerrojo de escritura tomado: nada de lecturas del store, que esperarían a soltarlo
+        for (int id = 0; id < lastSeen.length; id++) {
+            if (cycle - lastSeen[id] >= expireAfterCycles && store.remove(id)) {
+                if (count == expired.length) {
+                    expired = Arrays.copyOf(expired, Math.max(16, count * 2));
+                }
+                expired[count++] = id;
+            }
+        }
+        return count == expired.length ? expired : Arrays.copyOf(expired, count);
+    }
+
+    /**
+     * Siembra el estado conocido (p.ej. desde un checkpoint) sin generar cambios.
+     */
+    public void restore(Collection<CarparkSnapshot> snapshots) {
+        long stamp = store.beginWrite();
+        try {
+            for (CarparkSnapshot snapshot : snapshots) {
+                int id = dictionary.intern(snapshot.carparkNumber());
+                markSeen(id);
+                store.upsert(id, snapshot);
+            }
+        } finally {
+            store.endWrite(stamp);
+        }
+    }
+
+    /**
+     * Reconstruye los snapshots con desglose por tipo; pensado para checkpoints, no para el ciclo.
+     */
+    public List<CarparkSnapshot> snapshots() {
+        int capacity = Math.min(store.capacity(), dictionary.size());
+        List<CarparkSnapshot> result = new ArrayList<>(store.size());
+        for (int id = 0; id < capacity; id++) {
+            CarparkSnapshot snapshot = store.toSnapshot(id, dictionary.nameOf(id));
+            if (snapshot != null) {
+                result.add(snapshot);
+            }
+        }
+        return result;
+    }
+
+    public Optional<CarparkAvailability> find(String carparkNumber) {
+        return Optional.ofNullable(get(dictionary.idOf(carparkNumber)));
+    }
+
+    public CarparkAvailability get(int id) {
+        return store.get(id, dictionary.nameOf(id));
+    }
+
+    public CarparkAvailabilityStore store() {
+        return store;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * Resultado de un ciclo: ids densos de los carparks con ocupación nueva, de los que se han
+     * borrado por no aparecer, y contadores de lo descartado.
+     */
+    public record ChangeSet(
+            int[] ids,
+            int[] expired,
+            int feedSize,
+            int stale,
+            int refreshed
+    ) {
+        public boolean isEmpty() {
+            return ids.length == 0 && expired.length == 0;
+        }
+    }
+}
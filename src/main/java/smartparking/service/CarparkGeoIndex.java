@@ -0,0 +1,171 @@
+package smartparking.service;
+
+import smartparking.integration.CarparkIdDictionary;
+import smartparking.integration.CarparkMetadata;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice espacial inmutable de los carparks con coordenadas: una rejilla uniforme de celdas de
+ * {@code cellDegrees} grados, cada una con los ids densos (ver {@link CarparkIdDictionary}) que
+ * caen dentro. Una consulta por rectángulo solo recorre las celdas que lo cubren.
+ */
+public final class CarparkGeoIndex {
+
+    private static final int[] NO_IDS = new int[0];
+
+    private final double cellDegrees;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final Map<Long, int[]> cells;
+    private final int size;
+
+    private CarparkGeoIndex(double cellDegrees, double[] latitudes, double[] longitudes,
+                            Map<Long, int[]> cells, int size) {
+        this.cellDegrees = cellDegrees;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.cells = cells;
+        this.size = size;
+    }
+
+    public static CarparkGeoIndex build(List<CarparkMetadata> metadata, CarparkIdDictionary dictionary,
+                                        double cellDegrees) {
+        if (cellDegrees <= 0) {
+            throw new IllegalArgumentException("El tamaño de celda debe ser positivo: " + cellDegrees);
+        }
+        double[] latitudes = new double[dictionary.size()];
+        double[] longitudes = new double[dictionary.size()];
+        Arrays.fill(latitudes, Double.NaN);
+        Arrays.fill(longitudes, Double.NaN);
+
+        Map<Long, List<Integer>> grouped = new HashMap<>();
+        int size = 0;
+        for (CarparkMetadata m : metadata) {
+            int id = dictionary.idOf(m.carparkNumber());
+            if (!m.hasCoordinates() || id == CarparkIdDictionary.UNKNOWN || id >= latitudes.length
+                    || !Double.isNaN(latitudes[id])) {
+                continue;
+            }
+            latitudes[id] = m.latitude();
+            longitudes[id] = m.longitude();
+            grouped.computeIfAbsent(key(cell(m.latitude(), cellDegrees), cell(m.longitude(), cellDegrees)),
+                    k -> new ArrayList<>()).add(id);
+            size++;
+        }
+
+        Map<Long, int[]> cells = new HashMap<>(grouped.size() * 2);
+        grouped.forEach((key, ids) -> cells.put(key, ids.stream().mapToInt(Integer::intValue).toArray()));
+        return new CarparkGeoIndex(cellDegrees, latitudes, longitudes, cells, size);
+    }
+
+    private static int cell(double degrees, double cellDegrees) {
+        return (int) Math.floor(degrees / cellDegrees);
+    }
+
+    private static long key(int latCell, int lonCell) {
+        return (long) latCell << 32 | (lonCell & 0xFFFFFFFFL);
+    }
+
+    public boolean contains(int id) {
+        return id >= 0 && id < latitudes.length && !Double.isNaN(latitudes[id]);
+    }
+
+    public double latitude(int id) {
+        return latitudes[id];
+    }
+
+    public double longitude(int id) {
+        return longitudes[id];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Clave de la celda de un carpark indexado ({@link #contains}), comparable con las de {@link #cellsOf}.
+     */
+    public long cellOf(int id) {
+        return key(cell(latitudes[id], cellDegrees), cell(longitudes[id], cellDegrees));
+    }
+
+    /**
+     * Claves de las celdas que cubren el rectángulo, o null si son más de {@code maxCells}.
+     */
+    public long[] cellsOf(Box box, int maxCells) {
+        int south = cell(box.south(), cellDegrees);
+        int north = cell(box.north(), cellDegrees);
+        int west = cell(box.west(), cellDegrees);
+        int east = cell(box.east(), cellDegrees);
+        long count = (long) (north - south + 1) * (east - west + 1);
+        if (count > maxCells) {
+            return null;
+        }
+        long[] keys = new long[(int) count];
+        int i = 0;
+        for (int lat = south; lat <= north; lat++) {
+            for (int lon = west; lon <= east; lon++) {
+                keys[i++] = key(lat, lon);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Ids de los carparks dentro del rectángulo. Si cubre más celdas que carparks hay indexados
+     * se recorren los carparks directamente.
+     */
+    public int[] query(Box box) {
+        long[] keys = cellsOf(box, Math.max(16, size));
+        int[] found = new int[16];
+        int n = 0;
+        if (keys == null) {
+            for (int id = 0; id < latitudes.length; id++) {
+                if (contains(id) && box.contains(latitudes[id], longitudes[id])) {
+                    found = append(found, n++, id);
+                }
+            }
+        } else {
+            for (long key : keys) {
+                for (int id : cells.getOrDefault(key, NO_IDS)) {
+                    if (box.contains(latitudes[id], longitudes[id])) {
+                        found = append(found, n++, id);
+                    }
+                }
+            }
+        }
+        return Arrays.copyOf(found, n);
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index == array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+
+    /**
+     * Rectángulo en grados WGS84. No cruza el antimeridiano (no hace falta para Singapur).
+     */
+    public record Box(double south, double west, double north, double east) {
+
+        public Box {
+            if (!Double.isFinite(south) || !Double.isFinite(west) || !Double.isFinite(north) || !Double.isFinite(east)
+                    || south > north || west > east
+                    || south < -90 || north > 90 || west < -180 || east > 180) {
+                throw new IllegalArgumentException(
+                        "Rectángulo no válido: " + south + "," + west + " - " + north + "," + east);
+            }
+        }
+
+        public boolean contains(double latitude, double longitude) {
+            return latitude >= south && latitude <= north && longitude >= west && longitude <= east;
+        }
+    }
+}
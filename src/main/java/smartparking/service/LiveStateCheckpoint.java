@@ -0,0 +1,208 @@
+package smartparking.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import smartparking.integration.CarparkSnapshot;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.CRC32;
+
+/**
+ * Checkpoint binario del estado en vivo (snapshots por carpark y parking activo) en un fichero
+ * mapeado en memoria, para que un reinicio recupere el estado sin esperar al primer fetch.
+ *
+ * Formato: magic, versión, CRC32 del cuerpo, longitud del cuerpo y el cuerpo:
+ * savedAt, parking activo y por cada carpark id, updatedAt y sus tipos (código, total, libres).
+ */
+@Component
+public class LiveStateCheckpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveStateCheckpoint.class);
+
+    private static final int MAGIC = 0x53504B31; // "SPK1"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+
+    private final Path file;
+    private final boolean enabled;
+    private final Duration maxAge;
+
+    public LiveStateCheckpoint(
+            @Value("${parking.checkpoint.file:live-state.ckpt}") String file,
+            @Value("${parking.checkpoint.enabled:true}") boolean enabled,
+            @Value("${parking.checkpoint.max-age-ms:3600000}") long maxAgeMs
+    ) {
+        this.file = Path.of(file);
+        this.enabled = enabled;
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void write(String activeCarparkId, Collection<CarparkSnapshot> snapshots) {
+        if (!enabled) {
+            return;
+        }
+        List<CarparkSnapshot> rows = List.copyOf(snapshots);
+        byte[] active = activeCarparkId != null ? activeCarparkId.getBytes(StandardCharsets.UTF_8) : null;
+
+        int bodyBytes = 8 + 2 + (active != null ? active.length : 0) + 4;
+        for (CarparkSnapshot s : rows) {
+            bodyBytes += 2 + utf8Length(s.carparkNumber()) + 8 + 1;
+            for (CarparkSnapshot.CarparkTypeInfo t : s.types()) {
+                bodyBytes += 2 + utf8Length(t.lotType()) + 4 + 4;
+            }
+        }
+
+        Path tmp = null;
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            Files.createDirectories(parent);
+            tmp = Files.createTempFile(parent, "live-state", ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + bodyBytes);
+                buffer.position(HEADER_BYTES);
+                buffer.putLong(Instant.now().toEpochMilli());
+                putBytes(buffer, active);
+                buffer.putInt(rows.size());
+                for (CarparkSnapshot s : rows) {
+                    putString(buffer, s.carparkNumber());
+                    buffer.putLong(s.updatedAt().toEpochMilli());
+                    buffer.put((byte) s.types().size());
+                    for (CarparkSnapshot.CarparkTypeInfo t : s.types()) {
+                        putString(buffer, t.lotType());
+                        buffer.putInt(t.totalLots());
+                        buffer.putInt(t.availableLots());
+                    }
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(buffer.slice(HEADER_BYTES, bodyBytes));
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, FORMAT_VERSION);
+                buffer.putLong(8, crc.getValue());
+                buffer.putInt(16, bodyBytes);
+                buffer.force();
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Checkpoint: {} carparks written to {} ({} bytes)", rows.size(), file, HEADER_BYTES + bodyBytes);
+        } catch (IOException e) {
+            log.warn("Checkpoint: could not write {}: {}", file, e.getMessage());
+            deleteQuietly(tmp);
+        }
+    }
+
+    public Optional<State> read() {
+        if (!enabled || !Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                return Optional.empty();
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyBytes = buffer.getInt(16);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION
+                    || bodyBytes < 0 || HEADER_BYTES + (long) bodyBytes != size) {
+                log.info("Checkpoint: ignoring {} (unknown format)", file);
+                return Optional.empty();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(buffer.slice(HEADER_BYTES, bodyBytes));
+            if (crc.getValue() != buffer.getLong(8)) {
+                log.warn("Checkpoint: ignoring {} (checksum mismatch)", file);
+                return Optional.empty();
+            }
+
+            buffer.position(HEADER_BYTES);
+            Instant savedAt = Instant.ofEpochMilli(buffer.getLong());
+            if (savedAt.plus(maxAge).isBefore(Instant.now())) {
+                log.info("Checkpoint: ignoring {} saved at {} (older than {})", file, savedAt, maxAge);
+                return Optional.empty();
+            }
+            String active = getString(buffer);
+            int count = buffer.getInt();
+            List<CarparkSnapshot> snapshots = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = getString(buffer);
+                Instant updatedAt = Instant.ofEpochMilli(buffer.getLong());
+                int typeCount = Byte.toUnsignedInt(buffer.get());
+                CarparkSnapshot.CarparkTypeInfo[] types = new CarparkSnapshot.CarparkTypeInfo[typeCount];
+                for (int t = 0; t < typeCount; t++) {
+                    types[t] = new CarparkSnapshot.CarparkTypeInfo(getString(buffer), buffer.getInt(), buffer.getInt());
+                }
+                snapshots.add(new CarparkSnapshot(id, updatedAt, List.of(types)));
+            }
+            return Optional.of(new State(savedAt, active, snapshots));
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            log.warn("Checkpoint: could not read {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static int utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(MappedByteBuffer buffer, String value) {
+        putBytes(buffer, value != null ? value.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private static void putBytes(MappedByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(MappedByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Estado recuperado de un checkpoint.
+     */
+    public record State(
+            Instant savedAt,
+            String activeCarparkId,
+            List<CarparkSnapshot> snapshots
+    ) {
+    }
+}
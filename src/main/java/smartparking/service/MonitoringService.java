@@ -2,7 +2,6 @@ package smartparking.service;
 
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import smartparking.integration.CarparkSnapshot;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -34,7 +33,7 @@ public class MonitoringService {
 
     public HealthSnapshot getHealthSnapshot() {
         ParkingService.ParkingStatistics statistics = parkingService.getStatistics();
-        Optional<CarparkSnapshot> snapshot = realTimeParkingUpdater.getLastSnapshot();
+        Optional<CarparkAvailability> snapshot = realTimeParkingUpdater.getActiveAvailability();
 
         Long feedAgeMs = snapshot.map(s -> Duration.between(s.updatedAt(), Instant.now()).toMillis()).orElse(null);
         String lastFeedAt = snapshot.map(s -> DateTimeFormatter.ISO_INSTANT.format(s.updatedAt())).orElse(null);
@@ -71,5 +70,19 @@ public class MonitoringService {
             int recentEvents,
             String message
     ) {
+        /**
+         * Mismo estado salvo la edad del feed, que cambia con cada consulta.
+         */
+        public boolean sameStateAs(HealthSnapshot other) {
+            return other != null
+                    && status.equals(other.status)
+                    && message.equals(other.message)
+                    && java.util.Objects.equals(lastFeedAt, other.lastFeedAt)
+                    && recentEvents == other.recentEvents
+                    && statistics.getTotal() == other.statistics.getTotal()
+                    && statistics.getFree() == other.statistics.getFree()
+                    && statistics.getOccupied() == other.statistics.getOccupied()
+                    && statistics.getOutOfService() == other.statistics.getOutOfService();
+        }
     }
 }
@@ -4,6 +4,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import smartparking.model.ParkingEvent;
 import smartparking.model.SpotStatus;
+import smartparking.observer.SpotChangeSet;
 
 import java.time.Clock;
 import java.time.Instant;
@@ -12,6 +13,8 @@ import java.util.ArrayList;
 import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Registro en memoria de eventos del parking, consumido por APIs y monitorizacion.
@@ -22,12 +25,21 @@ public class ParkingActivityLog {
     private final Deque<ParkingEvent> events = new ArrayDeque<>();
     private final int maxSize;
     private final Clock clock;
+    private final List<Consumer<List<ParkingEvent>>> listeners = new CopyOnWriteArrayList<>();
 
     public ParkingActivityLog(@Value("${parking.activity-log.max-size:200}") int maxSize) {
         this.maxSize = Math.max(10, maxSize);
         this.clock = Clock.systemUTC();
     }
 
+    /**
+     * Recibe los eventos nuevos de cada registro, del más reciente al más antiguo. Se llama con el
+     * cerrojo del registro tomado: el listener no debe bloquear.
+     */
+    public void addListener(Consumer<List<ParkingEvent>> listener) {
+        listeners.add(listener);
+    }
+
     public void recordSpotChange(int spotId, SpotStatus status, String source, String message) {
         record(new ParkingEvent(spotId, status, Instant.now(clock), source, message));
     }
@@ -37,6 +49,38 @@ public class ParkingActivityLog {
         while (events.size() > maxSize) {
             events.removeLast();
         }
+        notifyListeners(List.of(event));
+    }
+
+    /**
+     * Registra un lote de cambios con una sola marca de tiempo y una sola toma del cerrojo.
+     * Si el lote supera la capacidad solo se guardan los últimos cambios.
+     */
+    public synchronized void recordSpotChanges(SpotChangeSet changes, String source, String message) {
+        Instant now = Instant.now(clock);
+        int first = Math.max(0, changes.size() - maxSize);
+        for (int i = first; i < changes.size(); i++) {
+            events.addFirst(new ParkingEvent(changes.spotId(i), changes.newStatus(i), now, source, message));
+        }
+        while (events.size() > maxSize) {
+            events.removeLast();
+        }
+        if (!listeners.isEmpty() && changes.size() > first) {
+            List<ParkingEvent> added = new ArrayList<>(changes.size() - first);
+            for (ParkingEvent event : events) {
+                if (added.size() == changes.size() - first) {
+                    break;
+                }
+                added.add(event);
+            }
+            notifyListeners(added);
+        }
+    }
+
+    private void notifyListeners(List<ParkingEvent> added) {
+        for (Consumer<List<ParkingEvent>> listener : listeners) {
+            listener.accept(added);
+        }
     }
 
     public synchronized List<ParkingEvent> getRecent(int limit) {
@@ -1,5 +1,6 @@
 package smartparking.service;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import smartparking.repository.ParkingHistoryRepository;
@@ -7,6 +8,8 @@ import smartparking.model.ParkingHistoryEntity;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -15,14 +18,18 @@ public class ParkingHistoryService {
     private final ParkingService parkingService;
     private final RealTimeParkingUpdater realTimeParkingUpdater;
     private final ParkingHistoryRepository repository;
+    private final long windowHours;
+    private final List<BiConsumer<String, HistoryPoint>> listeners = new CopyOnWriteArrayList<>();
 
     public ParkingHistoryService(
             ParkingService parkingService,
             @org.springframework.context.annotation.Lazy RealTimeParkingUpdater realTimeParkingUpdater,
-            ParkingHistoryRepository repository) {
+            ParkingHistoryRepository repository,
+            @Value("${parking.history.window-hours:24}") long windowHours) {
         this.parkingService = parkingService;
         this.realTimeParkingUpdater = realTimeParkingUpdater;
         this.repository = repository;
+        this.windowHours = Math.max(1, windowHours);
     }
 
     // Ya no necesitamos loadHistory() ni saveHistory() con archivos JSON.
@@ -31,7 +38,7 @@ public class ParkingHistoryService {
     @Scheduled(fixedRate = 60000) // Cada minuto
     public void captureSnapshot() {
         var stats = parkingService.getStatistics();
-        String currentId = realTimeParkingUpdater.getLastSnapshot()
+        String currentId = realTimeParkingUpdater.getActiveAvailability()
                 .map(s -> s.carparkNumber())
                 .orElse("UNKNOWN");
 
@@ -43,16 +50,40 @@ public class ParkingHistoryService {
         );
 
         repository.save(entity);
+        HistoryPoint point = new HistoryPoint(entity.getTimestamp(), entity.getFree(), entity.getOccupied());
+        for (BiConsumer<String, HistoryPoint> listener : listeners) {
+            listener.accept(currentId, point);
+        }
     }
 
+    /**
+     * Recibe cada punto guardado junto con el carpark al que pertenece.
+     */
+    public void addListener(BiConsumer<String, HistoryPoint> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Puntos del parking activo dentro de la ventana de {@code parking.history.window-hours}.
+     */
     public List<HistoryPoint> getHistory() {
-        String currentId = realTimeParkingUpdater.getLastSnapshot()
+        return repository.findByCarparkIdAndTimestampGreaterThanEqualOrderByTimestampAsc(
+                        getActiveCarparkId(), windowStart()).stream()
+                .map(e -> new HistoryPoint(e.getTimestamp(), e.getFree(), e.getOccupied()))
+                .collect(Collectors.toList());
+    }
+
+    public String getActiveCarparkId() {
+        return realTimeParkingUpdater.getActiveAvailability()
                 .map(s -> s.carparkNumber())
                 .orElse("UNKNOWN");
+    }
 
-        return repository.findByCarparkIdOrderByTimestampAsc(currentId).stream()
-                .map(e -> new HistoryPoint(e.getTimestamp(), e.getFree(), e.getOccupied()))
-                .collect(Collectors.toList());
+    /**
+     * Punto más antiguo que devuelve {@link #getHistory} en este momento.
+     */
+    public LocalDateTime windowStart() {
+        return LocalDateTime.now().minusHours(windowHours);
     }
 
     public record HistoryPoint(
@@ -0,0 +1,192 @@
+package smartparking.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import smartparking.config.ParkingProperties;
+import smartparking.integration.CarparkIdDictionary;
+import smartparking.model.ParkingLot;
+import smartparking.model.SpotStatus;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parkings a nivel de plaza para cualquier carpark del feed, independientes del parking activo
+ * de {@link ParkingService}.
+ *
+ * Cada {@link ParkingLot} se crea la primera vez que se pide y desde entonces se actualiza con los
+ * cambios del feed. Si la memoria estimada supera el presupuesto se expulsan los menos usados (LRU);
+ * las actualizaciones del feed no cuentan como uso.
+ */
+@Component
+public class ParkingLotRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(ParkingLotRegistry.class);
+
+    // Coste aproximado de un parking vacío: objeto, contadores, vistas y entrada del mapa
+    private static final long LOT_OVERHEAD_BYTES = 256;
+
+    private final RealTimeParkingUpdater updater;
+    private final CarparkIdDictionary idDictionary;
+    private final ParkingProperties properties;
+    private final long memoryBudgetBytes;
+
+    private final Map<Integer, Entry> lots = new ConcurrentHashMap<>();
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParkingLotRegistry(
+            RealTimeParkingUpdater updater,
+            CarparkIdDictionary idDictionary,
+            ParkingProperties properties,
+            @Value("${parking.lots.memory-budget-kb:4096}") long memoryBudgetKb
+    ) {
+        this.updater = updater;
+        this.idDictionary = idDictionary;
+        this.properties = properties;
+        this.memoryBudgetBytes = Math.max(1, memoryBudgetKb) * 1024;
+    }
+
+    @PostConstruct
+    void subscribeToFeed() {
+        updater.addAvailabilityListener(this::onAvailabilityChanged);
+    }
+
+    /**
+     * Parking del carpark, creado a partir de su última disponibilidad si aún no existe.
+     * Vacío si el carpark no aparece en el feed.
+     */
+    public Optional<ParkingLot> lotFor(String carparkNumber) {
+        int id = idDictionary.idOf(carparkNumber);
+        if (id == CarparkIdDictionary.UNKNOWN) {
+            return Optional.empty();
+        }
+
+        Entry entry = lots.get(id);
+        if (entry == null) {
+            CarparkAvailability availability = updater.getAvailability(id);
+            if (availability == null) {
+                return Optional.empty();
+            }
+            entry = materialize(id, availability);
+        }
+        entry.lastAccess = System.nanoTime();
+        return Optional.of(entry.lot);
+    }
+
+    private Entry materialize(int id, CarparkAvailability availability) {
+        // Se proyecta antes de publicarlo; aún sin observadores, así que no notifica a nadie
+        ParkingLot lot = new ParkingLot(availability.carparkNumber(), 0);
+        Entry created = new Entry(lot);
+        projectLot(lot, availability);
+        created.bytes = estimateBytes(lot);
+
+        Entry existing = lots.putIfAbsent(id, created);
+        if (existing != null) {
+            return existing;
+        }
+        usedBytes.addAndGet(created.bytes);
+        log.debug("Lot registry: materialized {} ({} spots, {} lots, {} KB)",
+                availability.carparkNumber(), created.lot.getSpotCount(), lots.size(), usedBytes.get() / 1024);
+        evictIfOverBudget(id);
+        return created;
+    }
+
+    /**
+     * Ciclo del feed: solo se reproyectan los parkings ya creados.
+     */
+    private void onAvailabilityChanged(int[] ids) {
+        if (lots.isEmpty()) {
+            return;
+        }
+        for (int id : ids) {
+            Entry entry = lots.get(id);
+            if (entry != null) {
+                CarparkAvailability availability = updater.getAvailability(id);
+                if (availability != null) {
+                    project(entry, availability);
+                }
+            }
+        }
+        evictIfOverBudget(CarparkIdDictionary.UNKNOWN);
+    }
+
+    private void project(Entry entry, CarparkAvailability availability) {
+        projectLot(entry.lot, availability);
+        long bytes = estimateBytes(entry.lot);
+        synchronized (entry) {
+            if (!entry.evicted) {
+                usedBytes.addAndGet(bytes - entry.bytes);
+                entry.bytes = bytes;
+            }
+        }
+    }
+
+    private void projectLot(ParkingLot lot, CarparkAvailability availability) {
+        if (availability.totalLots() <= 0) {
+            lot.fill(SpotStatus.OUT_OF_SERVICE);
+        } else {
+            int size = availability.totalLots();
+            if (properties.getMaxSpots() > 0) {
+                size = Math.min(size, properties.getMaxSpots());
+            }
+            lot.applyAvailability(size, availability.availableLots());
+        }
+    }
+
+    private static long estimateBytes(ParkingLot lot) {
+        return LOT_OVERHEAD_BYTES + 8L * ((lot.getSpotCount() + 31) / 32);
+    }
+
+    /**
+     * Expulsa por LRU hasta volver al presupuesto. No expulsa nunca el parking recién pedido.
+     * El recorrido es lineal, pero solo ocurre al superar el presupuesto.
+     */
+    private synchronized void evictIfOverBudget(int keep) {
+        while (usedBytes.get() > memoryBudgetBytes && lots.size() > 1) {
+            Integer coldest = null;
+            long oldest = Long.MAX_VALUE;
+            for (Map.Entry<Integer, Entry> candidate : lots.entrySet()) {
+                if (candidate.getKey() != keep && candidate.getValue().lastAccess < oldest) {
+                    oldest = candidate.getValue().lastAccess;
+                    coldest = candidate.getKey();
+                }
+            }
+            if (coldest == null) {
+                return;
+            }
+            Entry evicted = lots.remove(coldest);
+            if (evicted != null) {
+                synchronized (evicted) {
+                    usedBytes.addAndGet(-evicted.bytes);
+                    evicted.evicted = true;
+                }
+                evictions.incrementAndGet();
+                log.debug("Lot registry: evicted {}", idDictionary.nameOf(coldest));
+            }
+        }
+    }
+
+    public RegistryStats getStats() {
+        return new RegistryStats(lots.size(), usedBytes.get(), memoryBudgetBytes, evictions.get());
+    }
+
+    public record RegistryStats(int lots, long estimatedBytes, long budgetBytes, long evictions) {}
+
+    private static final class Entry {
+        private final ParkingLot lot;
+        private volatile long lastAccess = System.nanoTime();
+        // Protegidos por el monitor de la entrada
+        private long bytes;
+        private boolean evicted;
+
+        private Entry(ParkingLot lot) {
+            this.lot = lot;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package smartparking.service;
 
 import org.springframework.stereotype.Service;
 import smartparking.config.ParkingProperties;
-import smartparking.integration.CarparkSnapshot;
 import smartparking.model.ParkingLot;
 import smartparking.model.ParkingSpot;
 import smartparking.model.SpotStatus;
@@ -37,8 +36,7 @@ public class ParkingService {
     }
 
     public boolean changeSpotStatus(int id, SpotStatus newStatus) {
-        Optional<ParkingSpot> spot = parkingLot.findSpotById(id);
-        if (spot.isPresent()) {
+        if (parkingLot.findSpotById(id).isPresent()) {
             parkingLot.changeSpotStatus(id, newStatus);
             return true;
         }
@@ -46,17 +44,10 @@ public class ParkingService {
     }
 
     /**
-     * Actualiza el estado local a partir de datos externos de ocupación.
+     * Actualiza el estado local a partir de datos externos de ocupación,
+     * ya agregados para todos los tipos de plaza.
      */
-    public synchronized void applyExternalSnapshot(CarparkSnapshot snapshot) {
-        if (snapshot == null) {
-            return;
-        }
-
-        // Sumarizamos todos los tipos para la visualizacion general
-        int totalLots = snapshot.types().stream().mapToInt(t -> t.totalLots()).sum();
-        int availableLots = snapshot.types().stream().mapToInt(t -> t.availableLots()).sum();
-
+    public synchronized void applyExternalAvailability(int totalLots, int availableLots) {
         if (totalLots <= 0) {
             setAll(SpotStatus.OUT_OF_SERVICE);
             return;
@@ -67,17 +58,10 @@ public class ParkingService {
             targetSize = Math.min(totalLots, properties.getMaxSpots());
         }
         if (properties.isMirrorFeedSize()) {
-            parkingLot.resizeTo(targetSize);
-        }
-
-        List<ParkingSpot> spots = parkingLot.getSpots();
-        int capacity = spots.size();
-
-        int freeSlotsShown = Math.min(Math.max(availableLots, 0), capacity);
-
-        for (int i = 0; i < capacity; i++) {
-            SpotStatus target = i < freeSlotsShown ? SpotStatus.FREE : SpotStatus.OCCUPIED;
-            spots.get(i).setStatus(target);
+            // Tamaño y ocupación en una misma versión del parking
+            parkingLot.applyAvailability(targetSize, availableLots);
+        } else {
+            parkingLot.fillFreeThenOccupied(availableLots);
         }
     }
 
@@ -86,28 +70,14 @@ public class ParkingService {
     }
 
     private void setAll(SpotStatus status) {
-        parkingLot.getSpots().forEach(spot -> spot.setStatus(status));
+        parkingLot.fill(status);
     }
 
+    /**
+     * Estadísticas en O(1) a partir de los contadores del parking.
+     */
     public ParkingStatistics getStatistics() {
-        List<ParkingSpot> spots = parkingLot.getSpots();
-        long free = spots.stream()
-                .filter(s -> s.getStatus() == SpotStatus.FREE)
-                .count();
-        long occupied = spots.stream()
-                .filter(s -> s.getStatus() == SpotStatus.OCCUPIED)
-                .count();
-        long outOfService = spots.stream()
-                .filter(s -> s.getStatus() == SpotStatus.OUT_OF_SERVICE)
-                .count();
-
-        return new ParkingStatistics(
-                parkingLot.getName(),
-                spots.size(),
-                (int) free,
-                (int) occupied,
-                (int) outOfService
-        );
+        return ParkingStatistics.of(parkingLot);
     }
 
     public static class ParkingStatistics {
@@ -125,6 +95,17 @@ public class ParkingService {
             this.outOfService = outOfService;
         }
 
+        public static ParkingStatistics of(ParkingLot lot) {
+            ParkingLot.Occupancy occupancy = lot.getOccupancy();
+            return new ParkingStatistics(
+                    lot.getName(),
+                    occupancy.total(),
+                    occupancy.free(),
+                    occupancy.occupied(),
+                    occupancy.outOfService()
+            );
+        }
+
         // Getters
         public String getName() { return name; }
         public int getTotal() { return total; }
@@ -1,26 +1,37 @@
 package smartparking.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import smartparking.config.ParkingProperties;
+import smartparking.integration.CarparkFeedSource;
+import smartparking.integration.CarparkIdDictionary;
 import smartparking.integration.CarparkMetadata;
+import smartparking.integration.CarparkMetadataCache;
 import smartparking.integration.CarparkSnapshot;
-import smartparking.integration.SingaporeCarparkClient;
 import smartparking.model.Carpark;
 import smartparking.repository.CarparkRepository;
 import smartparking.repository.ParkingHistoryRepository;
 import smartparking.model.ParkingHistoryEntity;
 import smartparking.util.SVY21Converter;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Sincroniza el estado local con una fuente de datos en tiempo real.
@@ -30,84 +41,268 @@ public class RealTimeParkingUpdater {
 
     private static final Logger log = LoggerFactory.getLogger(RealTimeParkingUpdater.class);
 
-    private final SingaporeCarparkClient client;
+    private final CarparkFeedSource client;
+    private final CarparkMetadataCache metadataCache;
+    private final LiveStateCheckpoint checkpoint;
     private final ParkingService parkingService;
     private final ParkingProperties properties;
     private final CarparkRepository carparkRepository;
     private final ParkingHistoryRepository parkingHistoryRepository;
-
-    private volatile CarparkSnapshot lastSnapshot;
-    private volatile List<CarparkSnapshot> allSnapshots = Collections.emptyList();
+    private final AdaptivePollSchedule pollSchedule;
+    private final ScheduledExecutorService feedPoller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "carpark-feed-poller");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Carpark currently projected into the ParkingLot and the aggregates last applied to it
+    private volatile int activeId = CarparkIdDictionary.UNKNOWN;
+    private int appliedTotal;
+    private int appliedAvailable;
     private volatile List<CarparkMetadata> allMetadata = Collections.emptyList();
+    // Indexed by the dense id from CarparkIdDictionary; null for carparks without metadata
+    private volatile CarparkMetadata[] metadataByIndex = new CarparkMetadata[0];
     private volatile String activeCarparkId;
-    
-    // Cache for map data to avoid re-calculating on every request
-    private volatile List<Map<String, Object>> cachedMapData = Collections.emptyList();
+    private volatile boolean activeLotStale;
+
+    // Only carparks present in each cycle's change set are diffed downstream
+    private final CarparkIdDictionary idDictionary;
+    private final CarparkDeltaTracker deltaTracker;
+
+    // Cache for map data to avoid re-calculating on every request, updated per change
+    private volatile Map<String, Object>[] mapDataByIndex = newMapDataArray(0);
 
-    private final Map<String, CarparkSnapshot> lastKnownStates = new ConcurrentHashMap<>();
+    // Bumped whenever map/list contents change; pre-rendered responses are keyed by it
+    private volatile long feedVersion;
+    private final RenderedJsonCache mapDataJson;
+    private final RenderedJsonCache listJson;
+
+    // Interesados en los ids densos de los carparks que cambian en cada ciclo
+    private final List<Consumer<int[]>> availabilityListeners = new CopyOnWriteArrayList<>();
+
+    // Free lots last written to history per carpark id (NOT_RECORDED if none yet)
+    private static final int NOT_RECORDED = Integer.MIN_VALUE;
+    private int[] lastRecordedFree = new int[0];
+
+    // Checkpoint is only rewritten when something was applied since the last one
+    private long changeCount;
+    private long checkpointedChanges;
 
     public RealTimeParkingUpdater(
-            SingaporeCarparkClient client,
+            CarparkFeedSource client,
+            CarparkMetadataCache metadataCache,
+            LiveStateCheckpoint checkpoint,
+            CarparkIdDictionary idDictionary,
             ParkingService parkingService,
             ParkingProperties properties,
             CarparkRepository carparkRepository,
-            ParkingHistoryRepository parkingHistoryRepository
+            ParkingHistoryRepository parkingHistoryRepository,
+            ObjectMapper objectMapper,
+            AdaptivePollSchedule pollSchedule,
+            @Value("${parking.feed.expire-after-cycles:3}") int expireAfterCycles
     ) {
         this.client = client;
+        this.metadataCache = metadataCache;
+        this.checkpoint = checkpoint;
+        this.idDictionary = idDictionary;
+        this.deltaTracker = new CarparkDeltaTracker(idDictionary, expireAfterCycles);
         this.parkingService = parkingService;
         this.properties = properties;
         this.carparkRepository = carparkRepository;
         this.parkingHistoryRepository = parkingHistoryRepository;
+        this.pollSchedule = pollSchedule;
+        this.mapDataJson = new RenderedJsonCache(objectMapper, "map", this::getCachedMapData);
+        this.listJson = new RenderedJsonCache(objectMapper, "list", this::getCarparkList);
     }
 
     @PostConstruct
     public void bootstrap() {
+        restoreCheckpoint();
         CompletableFuture.runAsync(this::performInitialLoad);
     }
 
+    /**
+     * Recupera el último estado en vivo para responder antes del primer fetch y para que
+     * el histórico no vuelva a insertar una fila por cada carpark tras el reinicio.
+     */
+    private void restoreCheckpoint() {
+        if (client.isReplay()) {
+            // El checkpoint es del modo en vivo: un replay empieza desde su propia grabación
+            return;
+        }
+        long start = System.currentTimeMillis();
+        Optional<LiveStateCheckpoint.State> restored = checkpoint.read();
+        if (restored.isEmpty()) {
+            return;
+        }
+
+        LiveStateCheckpoint.State state = restored.get();
+        deltaTracker.restore(state.snapshots());
+        CarparkAvailabilityStore store = deltaTracker.store();
+        for (CarparkSnapshot snapshot : state.snapshots()) {
+            int id = idDictionary.idOf(snapshot.carparkNumber());
+            recordFree(id, store.availableLots(id));
+        }
+        this.activeCarparkId = state.activeCarparkId();
+        int restoredActive = idDictionary.idOf(state.activeCarparkId());
+        if (store.contains(restoredActive)) {
+            applyActive(restoredActive);
+        }
+        checkpointedChanges = changeCount;
+
+        log.info("Checkpoint: Restored {} carparks saved at {} in {} ms",
+                state.snapshots().size(), state.savedAt(), (System.currentTimeMillis() - start));
+    }
+
+    @Scheduled(initialDelayString = "${parking.checkpoint.interval-ms:60000}",
+            fixedDelayString = "${parking.checkpoint.interval-ms:60000}")
+    public synchronized void checkpointLiveState() {
+        // Un replay no debe dejar su estado como arranque en caliente del modo en vivo
+        if (!checkpoint.isEnabled() || client.isReplay()
+                || checkpointedChanges == changeCount || deltaTracker.size() == 0) {
+            return;
+        }
+        checkpoint.write(activeCarparkId, deltaTracker.snapshots());
+        checkpointedChanges = changeCount;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        feedPoller.shutdownNow();
+        checkpointLiveState();
+    }
+
+    /**
+     * Con caché en disco el feed empieza a servirse al momento y los metadatos se refrescan
+     * después; sin caché se descargan primero, como en el primer arranque.
+     */
     private void performInitialLoad() {
         try {
-            long count = carparkRepository.count();
-            if (count > 0) {
-                log.info("Database check: Found {} existing records. Skipping initial import.", count);
-                loadMetadataIntoMemory();
-            } else {
-                log.info("Database check: Empty. Starting initial data import...");
-                importMetadataToDatabase();
+            boolean warm = !client.isReplay() && loadMetadataIntoMemory();
+            if (warm) {
+                refreshFromFeed();
             }
+            try {
+                refreshMetadata();
+            } catch (Exception e) {
+                log.error("Bootstrap Error: Failed to initialize parking data", e);
+            }
+            if (!warm) {
+                refreshFromFeed();
+            }
+        } finally {
+            scheduleNextPoll();
+        }
+    }
+
+    /**
+     * Ciclo de sondeo autoprogramado: tras cada fetch se calcula la siguiente espera
+     * con {@link AdaptivePollSchedule} en lugar de usar un intervalo fijo.
+     */
+    private void pollFeed() {
+        try {
+            refreshFromFeed();
         } catch (Exception e) {
-            log.error("Bootstrap Error: Failed to initialize parking data", e);
+            log.warn("Feed refresh failed", e);
+            synchronized (this) {
+                pollSchedule.onFailure();
+            }
+        } finally {
+            scheduleNextPoll();
         }
-        refreshFromFeed();
     }
 
-    private void loadMetadataIntoMemory() {
-        long startFetch = System.currentTimeMillis();
-        this.allMetadata = client.fetchMetadata();
-        log.info("Metadata refresh: Loaded {} records into memory in {} ms", allMetadata.size(), (System.currentTimeMillis() - startFetch));
+    private synchronized void scheduleNextPoll() {
+        if (feedPoller.isShutdown()) {
+            return;
+        }
+        long delay = pollSchedule.nextDelayMillis(System.currentTimeMillis());
+        log.debug("Next feed poll in {} ms (estimated publish interval {} ms)",
+                delay, pollSchedule.estimatedIntervalMillis());
+        feedPoller.schedule(this::pollFeed, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean loadMetadataIntoMemory() {
+        long start = System.currentTimeMillis();
+        Optional<List<CarparkMetadata>> cached = metadataCache.load();
+        if (cached.isEmpty()) {
+            return false;
+        }
+        setMetadata(cached.get());
+        log.info("Metadata refresh: Loaded {} records from local cache in {} ms",
+                allMetadata.size(), (System.currentTimeMillis() - start));
+        return true;
     }
 
-    private void importMetadataToDatabase() {
+    private void refreshMetadata() {
         long startFetch = System.currentTimeMillis();
-        this.allMetadata = client.fetchMetadata();
+        List<CarparkMetadata> fetched = client.fetchMetadata();
         long fetchTime = System.currentTimeMillis() - startFetch;
-        log.info("API Fetch: Retrieved {} records in {} ms", allMetadata.size(), fetchTime);
+        log.info("API Fetch: Retrieved {} records in {} ms", fetched.size(), fetchTime);
 
-        if (!allMetadata.isEmpty()) {
-            List<Carpark> entities = allMetadata.stream()
-                    .map(this::mapToEntity)
-                    .collect(Collectors.toList());
+        if (fetched.isEmpty()) {
+            log.warn("API Fetch: No records found. Keeping {} records already in memory.", allMetadata.size());
+            return;
+        }
 
-            log.info("Database Import: Starting batch insert of {} records...", entities.size());
-            long startSave = System.currentTimeMillis();
-            carparkRepository.saveAll(entities);
-            long saveTime = System.currentTimeMillis() - startSave;
+        List<CarparkMetadata> resolved = resolveCoordinates(fetched);
+        setMetadata(resolved);
+        if (client.isReplay()) {
+            log.info("Replay: metadata kept in memory only; cache file and database are left untouched");
+            return;
+        }
+        metadataCache.store(resolved);
+        importMetadataToDatabase(resolved);
+    }
 
-            log.info("Database Import: COMPLETED. Saved {} records in {} ms (Avg: {} ms/record)",
-                    entities.size(), saveTime, String.format("%.2f", (double) saveTime / entities.size()));
-        } else {
-            log.warn("API Fetch: No records found. Skipping database import.");
+    /**
+     * Convierte una sola vez las coordenadas SVY21 de los metadatos a WGS84 (lat/lon).
+     * Los registros con coordenadas inválidas se informan aquí y quedan fuera del mapa.
+     */
+    private List<CarparkMetadata> resolveCoordinates(List<CarparkMetadata> metadata) {
+        List<CarparkMetadata> resolved = new ArrayList<>(metadata.size());
+        List<String> invalid = new ArrayList<>();
+        for (CarparkMetadata m : metadata) {
+            if (m.hasCoordinates()) {
+                resolved.add(m);
+                continue;
+            }
+            try {
+                double x = Double.parseDouble(m.xCoord());
+                double y = Double.parseDouble(m.yCoord());
+                SVY21Converter.LatLon latLon = SVY21Converter.computeLatLon(y, x);
+                resolved.add(m.withCoordinates(latLon.lat, latLon.lon));
+            } catch (NumberFormatException | NullPointerException e) {
+                invalid.add(m.carparkNumber());
+                resolved.add(m);
+            }
+        }
+        if (!invalid.isEmpty()) {
+            log.warn("Coordinates: {} of {} carparks have invalid x/y and will not be shown on the map: {}",
+                    invalid.size(), metadata.size(), invalid);
         }
+        return resolved;
+    }
+
+    private void importMetadataToDatabase(List<CarparkMetadata> metadata) {
+        long count = carparkRepository.count();
+        long withoutCoordinates = metadata.stream().filter(m -> !m.hasCoordinates()).count();
+        if (count >= metadata.size() && carparkRepository.countByLatitudeIsNull() <= withoutCoordinates) {
+            log.info("Database check: Found {} existing records. Skipping import.", count);
+            return;
+        }
+
+        List<Carpark> entities = metadata.stream()
+                .map(this::mapToEntity)
+                .collect(Collectors.toList());
+
+        log.info("Database Import: Found {} of {} records. Starting batch insert...", count, entities.size());
+        long startSave = System.currentTimeMillis();
+        carparkRepository.saveAll(entities);
+        long saveTime = System.currentTimeMillis() - startSave;
+
+        log.info("Database Import: COMPLETED. Saved {} records in {} ms (Avg: {} ms/record)",
+                entities.size(), saveTime, String.format("%.2f", (double) saveTime / entities.size()));
     }
 
     private Carpark mapToEntity(CarparkMetadata m) {
@@ -123,40 +318,106 @@ public class RealTimeParkingUpdater {
                 m.nightParking(),
                 m.carparkDecks(),
                 m.gantryHeight(),
-                m.carparkBasement()
+                m.carparkBasement(),
+                m.latitude(),
+                m.longitude()
         );
     }
 
-    @Scheduled(fixedDelayString = "${parking.update-interval-ms:30000}")
-    public void refreshFromFeed() {
+    public synchronized void refreshFromFeed() {
         var snapshots = client.fetchAll();
-        this.allSnapshots = snapshots;
 
         if (snapshots.isEmpty()) {
             log.warn("No hay datos en vivo, marcando todas las plazas como fuera de servicio");
+            pollSchedule.onFailure();
             parkingService.markOutOfService();
+            activeLotStale = true;
+            // Un ciclo sin datos cuenta para la caducidad: tras varios, /list y el mapa se vacían
+            applyExpired(deltaTracker.apply(snapshots).expired());
             return;
         }
 
-        updateHistory(snapshots);
+        long published = latestUpdate(snapshots);
+        if (!pollSchedule.onPayload(published, System.currentTimeMillis()) && !activeLotStale) {
+            // Mismo ciclo publicado otra vez: no hay nada que comparar
+            log.debug("Feed not advanced since {}, skipping cycle", Instant.ofEpochMilli(published));
+            return;
+        }
+
+        CarparkDeltaTracker.ChangeSet changes = deltaTracker.apply(snapshots);
+        changeCount += changes.ids().length + changes.refreshed();
+        log.debug("Feed delta: {} changed, {} refreshed, {} stale, {} expired of {} carparks",
+                changes.ids().length, changes.refreshed(), changes.stale(), changes.expired().length,
+                changes.feedSize());
+
+        updateHistory(changes);
         updateActiveCarpark(snapshots);
-        updateMapDataCache(snapshots);
+        updateMapDataCache(changes.ids());
+        if (changes.ids().length > 0) {
+            feedVersion++;
+            notifyAvailabilityListeners(changes.ids());
+        }
+        applyExpired(changes.expired());
     }
 
-    private void updateHistory(List<CarparkSnapshot> snapshots) {
-        try {
-            Set<String> knownIds = allMetadata.stream()
-                    .map(CarparkMetadata::carparkNumber)
-                    .collect(Collectors.toSet());
+    /**
+     * Quita del mapa y de /list los carparks que llevan varios ciclos sin aparecer en el feed.
+     * Los receptores reciben sus ids y ya no encuentran disponibilidad para ellos.
+     */
+    private void applyExpired(int[] expired) {
+        if (expired.length == 0) {
+            return;
+        }
+        log.info("Feed: {} carparks expired after missing from consecutive cycles", expired.length);
+        Map<String, Object>[] cache = mapDataByIndex.clone();
+        for (int id : expired) {
+            if (id < cache.length) {
+                cache[id] = null;
+            }
+        }
+        mapDataByIndex = cache;
+        changeCount += expired.length;
+        feedVersion++;
+        notifyAvailabilityListeners(expired);
+    }
+
+    private void notifyAvailabilityListeners(int[] ids) {
+        for (Consumer<int[]> listener : availabilityListeners) {
+            try {
+                listener.accept(ids);
+            } catch (RuntimeException e) {
+                log.warn("Availability listener failed", e);
+            }
+        }
+    }
 
+    /**
+     * Registra un receptor de los ids densos (ver {@link CarparkIdDictionary}) que cambian en cada ciclo.
+     * Se invoca en el hilo del feed: debe ser rápido.
+     */
+    public void addAvailabilityListener(Consumer<int[]> listener) {
+        availabilityListeners.add(listener);
+    }
+
+    private static long latestUpdate(List<CarparkSnapshot> snapshots) {
+        long latest = 0;
+        for (CarparkSnapshot snapshot : snapshots) {
+            latest = Math.max(latest, snapshot.updatedAt().toEpochMilli());
+        }
+        return latest;
+    }
+
+    private void updateHistory(CarparkDeltaTracker.ChangeSet changes) {
+        try {
+            CarparkMetadata[] known = metadataByIndex;
             List<ParkingHistoryEntity> historyToSave = new ArrayList<>();
 
-            for (CarparkSnapshot snapshot : snapshots) {
-                String id = snapshot.carparkNumber();
-                if (knownIds.contains(id)) {
-                    if (hasChanged(id, snapshot)) {
-                        historyToSave.add(createHistoryEntity(snapshot));
-                        lastKnownStates.put(id, snapshot);
+            for (int id : changes.ids()) {
+                if (id < known.length && known[id] != null) {
+                    CarparkAvailability current = deltaTracker.get(id);
+                    if (current != null && hasChanged(id, current.availableLots())) {
+                        historyToSave.add(createHistoryEntity(current));
+                        recordFree(id, current.availableLots());
                     }
                 }
             }
@@ -170,110 +431,235 @@ public class RealTimeParkingUpdater {
         }
     }
 
-    private boolean hasChanged(String id, CarparkSnapshot current) {
-        CarparkSnapshot previous = lastKnownStates.get(id);
-        if (previous == null) return true;
+    private boolean hasChanged(int id, int currFree) {
+        if (id >= lastRecordedFree.length) return true;
+        return lastRecordedFree[id] != currFree;
+    }
 
-        int prevFree = previous.types().stream().mapToInt(t -> t.availableLots()).sum();
-        int currFree = current.types().stream().mapToInt(t -> t.availableLots()).sum();
-        return prevFree != currFree;
+    private void recordFree(int id, int free) {
+        if (id >= lastRecordedFree.length) {
+            int oldLength = lastRecordedFree.length;
+            lastRecordedFree = Arrays.copyOf(lastRecordedFree, Math.max(id + 1, idDictionary.size()));
+            Arrays.fill(lastRecordedFree, oldLength, lastRecordedFree.length, NOT_RECORDED);
+        }
+        lastRecordedFree[id] = free;
     }
 
-    private ParkingHistoryEntity createHistoryEntity(CarparkSnapshot snapshot) {
-        int total = snapshot.types().stream().mapToInt(t -> t.totalLots()).sum();
-        int free = snapshot.types().stream().mapToInt(t -> t.availableLots()).sum();
+    private ParkingHistoryEntity createHistoryEntity(CarparkAvailability availability) {
         return new ParkingHistoryEntity(
-                snapshot.carparkNumber(),
-                LocalDateTime.ofInstant(snapshot.updatedAt(), ZoneId.systemDefault()),
-                free,
-                total - free
+                availability.carparkNumber(),
+                LocalDateTime.ofInstant(availability.updatedAt(), ZoneId.systemDefault()),
+                availability.availableLots(),
+                availability.totalLots() - availability.availableLots()
         );
     }
 
-    private void updateActiveCarpark(List<CarparkSnapshot> snapshots) {
+    /**
+     * Solo reproyecta el parking activo cuando su ocupación cambia respecto a lo aplicado.
+     */
+    private void updateActiveCarpark(List<CarparkSnapshot> feed) {
         String target = activeCarparkId;
         if (target == null) target = properties.getCarparkNumber();
 
-        String finalTarget = target;
-        CarparkSnapshot selected = snapshots.stream()
-                .filter(s -> finalTarget == null || finalTarget.isBlank() || s.carparkNumber().equalsIgnoreCase(finalTarget))
-                .findFirst()
-                .orElse(snapshots.get(0));
+        CarparkAvailabilityStore store = deltaTracker.store();
+        int selected = idDictionary.idOf(target);
+        if (!store.contains(selected)) {
+            selected = (target == null || target.isBlank()) && store.contains(activeId)
+                    ? activeId
+                    : idDictionary.idOf(feed.get(0).carparkNumber());
+        }
+        if (!store.contains(selected)) {
+            return;
+        }
 
-        this.lastSnapshot = selected;
-        parkingService.applyExternalSnapshot(selected);
+        if (selected == activeId && !activeLotStale
+                && store.totalLots(selected) == appliedTotal && store.availableLots(selected) == appliedAvailable) {
+            return;
+        }
+        applyActive(selected);
 
         log.info("Actualizado estado desde feed para parking {}: {} libres / {} total",
-                selected.carparkNumber(),
-                selected.types().stream().mapToInt(t -> t.availableLots()).sum(),
-                selected.types().stream().mapToInt(t -> t.totalLots()).sum());
+                idDictionary.nameOf(selected), appliedAvailable, appliedTotal);
     }
-    
-    private void updateMapDataCache(List<CarparkSnapshot> snapshots) {
-         Map<String, CarparkMetadata> metaMap = allMetadata.stream()
-                .collect(Collectors.toMap(
-                        CarparkMetadata::carparkNumber,
-                        m -> m,
-                        (existing, replacement) -> existing
-                ));
-
-        this.cachedMapData = snapshots.stream()
-                .map(snapshot -> buildMapData(snapshot, metaMap.get(snapshot.carparkNumber())))
-                .filter(Objects::nonNull)
-                .collect(Collectors.toList());
+
+    private void applyActive(int id) {
+        CarparkAvailabilityStore store = deltaTracker.store();
+        this.appliedTotal = store.totalLots(id);
+        this.appliedAvailable = store.availableLots(id);
+        this.activeId = id;
+        this.activeLotStale = false;
+        parkingService.applyExternalAvailability(appliedTotal, appliedAvailable);
+    }
+
+    private void updateMapDataCache(int[] ids) {
+        CarparkMetadata[] meta = metadataByIndex;
+        Map<String, Object>[] cache = mapDataByIndex;
+        if (cache.length < idDictionary.size()) {
+            cache = Arrays.copyOf(cache, idDictionary.size());
+        }
+        for (int id : ids) {
+            Map<String, Object> entry = buildMapData(id, id < meta.length ? meta[id] : null);
+            if (entry != null) {
+                cache[id] = entry;
+            }
+        }
+        mapDataByIndex = cache;
+    }
+
+    /**
+     * Reconstruye la caché del mapa completa; solo necesario cuando cambian los metadatos.
+     */
+    private synchronized void rebuildMapDataCache() {
+        CarparkAvailabilityStore store = deltaTracker.store();
+        int[] ids = IntStream.range(0, store.capacity()).filter(store::contains).toArray();
+        mapDataByIndex = newMapDataArray(idDictionary.size());
+        updateMapDataCache(ids);
+        feedVersion++;
+    }
+
+    /**
+     * Registra los carparks en el diccionario una sola vez por carga de metadatos.
+     */
+    private void setMetadata(List<CarparkMetadata> metadata) {
+        for (CarparkMetadata m : metadata) {
+            idDictionary.intern(m.carparkNumber());
+        }
+        CarparkMetadata[] byIndex = new CarparkMetadata[idDictionary.size()];
+        for (CarparkMetadata m : metadata) {
+            int id = idDictionary.idOf(m.carparkNumber());
+            if (byIndex[id] == null) {
+                byIndex[id] = m;
+            }
+        }
+        this.allMetadata = metadata;
+        this.metadataByIndex = byIndex;
+        rebuildMapDataCache();
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map<String, Object>[] newMapDataArray(int size) {
+        return (Map<String, Object>[]) new Map[size];
     }
     
-    private Map<String, Object> buildMapData(CarparkSnapshot snapshot, CarparkMetadata meta) {
-        if (meta == null || meta.xCoord() == null || meta.yCoord() == null) {
+    private Map<String, Object> buildMapData(int id, CarparkMetadata meta) {
+        if (meta == null || !meta.hasCoordinates()) {
             return null;
         }
-        try {
-            double x = Double.parseDouble(meta.xCoord());
-            double y = Double.parseDouble(meta.yCoord());
-            SVY21Converter.LatLon latLon = SVY21Converter.computeLatLon(y, x);
-
-            int total = snapshot.types().stream().mapToInt(t -> t.totalLots()).sum();
-            int available = snapshot.types().stream().mapToInt(t -> t.availableLots()).sum();
-
-            Map<String, Object> map = new HashMap<>();
-            map.put("id", snapshot.carparkNumber());
-            map.put("address", meta.address());
-            map.put("lat", latLon.lat);
-            map.put("lon", latLon.lon);
-            map.put("total", total);
-            map.put("available", available);
-            map.put("type", meta.carparkType());
-            return map;
-        } catch (NumberFormatException e) {
-            return null;
+
+        CarparkAvailabilityStore store = deltaTracker.store();
+        int total = store.totalLots(id);
+        int available = store.availableLots(id);
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("id", meta.carparkNumber());
+        map.put("address", meta.address());
+        map.put("lat", meta.latitude());
+        map.put("lon", meta.longitude());
+        map.put("total", total);
+        map.put("available", available);
+        map.put("type", meta.carparkType());
+        return map;
+    }
+
+    /**
+     * Disponibilidad agregada del parking activo.
+     */
+    public Optional<CarparkAvailability> getActiveAvailability() {
+        return Optional.ofNullable(deltaTracker.get(activeId));
+    }
+
+    /**
+     * Disponibilidad de un carpark por su id denso, o null si no hay datos.
+     */
+    public CarparkAvailability getAvailability(int id) {
+        return deltaTracker.get(id);
+    }
+
+    /**
+     * Snapshot del parking activo con el desglose por tipo de plaza.
+     */
+    public Optional<CarparkSnapshot> getActiveSnapshot() {
+        int id = activeId;
+        return Optional.ofNullable(deltaTracker.store().toSnapshot(id, idDictionary.nameOf(id)));
+    }
+
+    /**
+     * Disponibilidad de los carparks con metadatos cargados (los mismos que hay en base de datos).
+     */
+    public List<CarparkAvailability> getKnownAvailability() {
+        CarparkMetadata[] known = metadataByIndex;
+        List<CarparkAvailability> result = new ArrayList<>(known.length);
+        for (int id = 0; id < known.length; id++) {
+            if (known[id] != null) {
+                CarparkAvailability availability = deltaTracker.get(id);
+                if (availability != null) {
+                    result.add(availability);
+                }
+            }
         }
+        return result;
     }
 
-    public Optional<CarparkSnapshot> getLastSnapshot() {
-        return Optional.ofNullable(lastSnapshot);
+    /**
+     * Filas de /list: carparks con metadatos y su disponibilidad agregada.
+     */
+    public List<Map<String, Object>> getCarparkList() {
+        return getKnownAvailability().stream()
+                .map(s -> {
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("id", s.carparkNumber());
+                    map.put("totalLots", s.totalLots());
+                    map.put("availableLots", s.availableLots());
+                    return map;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * JSON de /map-data ya serializado (y comprimido) para la versión actual del feed.
+     */
+    public RenderedJsonCache.Rendered getMapDataPayload() {
+        return mapDataJson.get(feedVersion);
     }
 
-    public List<CarparkSnapshot> getAllSnapshots() {
-        return allSnapshots;
+    /**
+     * JSON de /list ya serializado (y comprimido) para la versión actual del feed.
+     */
+    public RenderedJsonCache.Rendered getCarparkListPayload() {
+        return listJson.get(feedVersion);
     }
 
     public List<CarparkMetadata> getAllMetadata() {
         return allMetadata;
     }
+
+    /**
+     * Entrada del mapa (ubicación y disponibilidad) de un carpark por su id denso, o null si no
+     * tiene coordenadas o datos. Es la misma instancia que sirve /map-data en esta versión.
+     */
+    public Map<String, Object> getMapData(int id) {
+        Map<String, Object>[] cache = mapDataByIndex;
+        return id >= 0 && id < cache.length ? cache[id] : null;
+    }
     
     public List<Map<String, Object>> getCachedMapData() {
-        return cachedMapData;
+        Map<String, Object>[] cache = mapDataByIndex;
+        List<Map<String, Object>> result = new ArrayList<>(cache.length);
+        for (Map<String, Object> entry : cache) {
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
     }
 
-    public boolean setActiveCarpark(String carparkId) {
-        Optional<CarparkSnapshot> found = allSnapshots.stream()
-                .filter(s -> s.carparkNumber().equalsIgnoreCase(carparkId))
-                .findFirst();
+    public synchronized boolean setActiveCarpark(String carparkId) {
+        int id = idDictionary.idOf(carparkId);
 
-        if (found.isPresent()) {
-            this.activeCarparkId = carparkId;
-            this.lastSnapshot = found.get();
-            parkingService.applyExternalSnapshot(found.get());
+        if (deltaTracker.store().contains(id)) {
+            this.activeCarparkId = idDictionary.nameOf(id);
+            changeCount++;
+            applyActive(id);
             log.info("Cambiado parking activo a: {}", carparkId);
             return true;
         }
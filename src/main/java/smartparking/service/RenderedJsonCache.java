@@ -0,0 +1,93 @@
+package smartparking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Respuesta JSON serializada una sola vez por versión del feed, en claro y comprimida con gzip.
+ * Se renderiza en la primera petición tras un cambio de versión y se comparte entre todos los clientes.
+ */
+public class RenderedJsonCache {
+
+    // Distingue versiones de distintos arranques para que un ETag antiguo nunca coincida por error
+    private static final String BOOT_ID = Long.toString(System.currentTimeMillis(), 36);
+
+    private final ObjectMapper objectMapper;
+    private final String name;
+    private final Supplier<?> source;
+    private volatile Rendered current;
+
+    public RenderedJsonCache(ObjectMapper objectMapper, String name, Supplier<?> source) {
+        this.objectMapper = objectMapper;
+        this.name = name;
+        this.source = source;
+    }
+
+    public Rendered get(long version) {
+        Rendered rendered = current;
+        if (rendered != null && rendered.version() == version) {
+            return rendered;
+        }
+        synchronized (this) {
+            rendered = current;
+            if (rendered == null || rendered.version() != version) {
+                rendered = render(version);
+                current = rendered;
+            }
+            return rendered;
+        }
+    }
+
+    private Rendered render(long version) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(source.get());
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+            try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                gzip.write(json);
+            }
+            String tag = name + "-" + BOOT_ID + "-" + version;
+            return new Rendered(version, "\"" + tag + "\"", "\"" + tag + "-gz\"", json, compressed.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo serializar " + name, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Cuerpo inmutable listo para servir. No modificar los arrays. Cada codificación es una
+     * representación distinta y lleva su propio ETag fuerte.
+     */
+    public record Rendered(long version, String etag, String gzipEtag, byte[] json, byte[] gzip) {
+
+        public String etag(boolean gzipped) {
+            return gzipped ? gzipEtag : etag;
+        }
+
+        /**
+         * Comprueba una cabecera If-None-Match (lista de ETags, débiles o fuertes, o "*"). Vale el
+         * ETag de cualquiera de las dos codificaciones: el contenido es el mismo.
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.startsWith("W/")) {
+                    tag = tag.substring(2);
+                }
+                if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package smartparking.web;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import smartparking.integration.CarparkIdDictionary;
+import smartparking.service.CarparkAvailability;
+import smartparking.service.RealTimeParkingUpdater;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publica la disponibilidad de cada carpark que cambia en el feed en {@code /topic/carparks/{id}}.
+ *
+ * Solo se recorren los destinos que tienen suscriptores: un ciclo del feed con miles de carparks
+ * cambiados no serializa nada si nadie los está mirando.
+ */
+@Component
+public class CarparkTopicPublisher {
+
+    public static final String PREFIX = "/topic/carparks/";
+
+    private final RealTimeParkingUpdater updater;
+    private final CarparkIdDictionary idDictionary;
+    private final StompSubscriptionTracker subscriptions;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public CarparkTopicPublisher(
+            RealTimeParkingUpdater updater,
+            CarparkIdDictionary idDictionary,
+            StompSubscriptionTracker subscriptions,
+            SimpMessagingTemplate messagingTemplate
+    ) {
+        this.updater = updater;
+        this.idDictionary = idDictionary;
+        this.subscriptions = subscriptions;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    @PostConstruct
+    void subscribeToFeed() {
+        updater.addAvailabilityListener(this::onAvailabilityChanged);
+    }
+
+    private void onAvailabilityChanged(int[] ids) {
+        List<String> watched = subscriptions.subscribedDestinations(PREFIX);
+        if (watched.isEmpty()) {
+            return;
+        }
+        BitSet changed = new BitSet();
+        for (int id : ids) {
+            changed.set(id);
+        }
+        for (String destination : watched) {
+            int id = idDictionary.idOf(destination.substring(PREFIX.length()));
+            if (id != CarparkIdDictionary.UNKNOWN && changed.get(id)) {
+                CarparkAvailability availability = updater.getAvailability(id);
+                if (availability != null) {
+                    messagingTemplate.convertAndSend(destination, toMessage(availability));
+                }
+            }
+        }
+    }
+
+    static Map<String, Object> toMessage(CarparkAvailability availability) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("carparkId", availability.carparkNumber());
+        message.put("totalLots", availability.totalLots());
+        message.put("availableLots", availability.availableLots());
+        message.put("updatedAt", availability.updatedAt() != null ? availability.updatedAt().toString() : null);
+        return message;
+    }
+}
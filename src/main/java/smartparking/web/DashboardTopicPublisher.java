@@ -0,0 +1,150 @@
+package smartparking.web;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import smartparking.model.ParkingEvent;
+import smartparking.service.MonitoringService;
+import smartparking.service.ParkingActivityLog;
+import smartparking.service.ParkingHistoryService;
+import smartparking.service.RealTimeParkingUpdater;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publica en STOMP lo que el dashboard consultaba por polling: salud, actividad e historial.
+ *
+ * Cada payload se calcula una vez y el broker lo reparte a todas las pestañas abiertas, así que
+ * la carga no depende de cuántas haya. La actividad se acumula y sale como mucho una vez por
+ * tick; la salud se recalcula solo si algo ha cambiado y se publica si el estado es distinto
+ * del último enviado (o para refrescar la edad del feed cada {@code health-heartbeat-ms}).
+ * Sin suscriptores no se calcula nada.
+ */
+@Component
+public class DashboardTopicPublisher {
+
+    public static final String HEALTH_TOPIC = "/topic/parking-health";
+    public static final String ACTIVITY_TOPIC = "/topic/parking-activity";
+    public static final String HISTORY_TOPIC = "/topic/parking-history";
+
+    private final MonitoringService monitoringService;
+    private final ParkingActivityLog activityLog;
+    private final ParkingHistoryService historyService;
+    private final RealTimeParkingUpdater updater;
+    private final StompSubscriptionTracker subscriptions;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final int maxActivityEvents;
+    private final long healthHeartbeatMillis;
+
+    // Eventos aún no publicados, del más reciente al más antiguo
+    private final Deque<ParkingEvent> pendingEvents = new ArrayDeque<>();
+    private volatile boolean healthDirty = true;
+    private MonitoringService.HealthSnapshot lastHealth;
+    private long lastHealthPublishedAt;
+
+    public DashboardTopicPublisher(
+            MonitoringService monitoringService,
+            ParkingActivityLog activityLog,
+            ParkingHistoryService historyService,
+            RealTimeParkingUpdater updater,
+            StompSubscriptionTracker subscriptions,
+            SimpMessagingTemplate messagingTemplate,
+            @Value("${parking.dashboard.max-activity-events:30}") int maxActivityEvents,
+            @Value("${parking.dashboard.health-heartbeat-ms:30000}") long healthHeartbeatMillis
+    ) {
+        this.monitoringService = monitoringService;
+        this.activityLog = activityLog;
+        this.historyService = historyService;
+        this.updater = updater;
+        this.subscriptions = subscriptions;
+        this.messagingTemplate = messagingTemplate;
+        this.maxActivityEvents = Math.max(1, maxActivityEvents);
+        this.healthHeartbeatMillis = healthHeartbeatMillis;
+    }
+
+    @PostConstruct
+    void subscribeToSources() {
+        activityLog.addListener(this::onActivity);
+        historyService.addListener(this::onHistoryPoint);
+        updater.addAvailabilityListener(ids -> healthDirty = true);
+    }
+
+    /**
+     * Se llama con el cerrojo del registro de actividad: solo acumula.
+     */
+    private void onActivity(List<ParkingEvent> added) {
+        healthDirty = true;
+        if (!subscriptions.hasSubscribers(ACTIVITY_TOPIC)) {
+            return;
+        }
+        synchronized (pendingEvents) {
+            for (int i = added.size() - 1; i >= 0; i--) {
+                pendingEvents.addFirst(added.get(i));
+            }
+            while (pendingEvents.size() > maxActivityEvents) {
+                pendingEvents.removeLast();
+            }
+        }
+    }
+
+    private void onHistoryPoint(String carparkId, ParkingHistoryService.HistoryPoint point) {
+        if (!subscriptions.hasSubscribers(HISTORY_TOPIC)) {
+            return;
+        }
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("carparkId", carparkId);
+        message.put("timestamp", point.timestamp());
+        message.put("free", point.free());
+        message.put("occupied", point.occupied());
+        // El cliente descarta lo anterior, igual que la ventana de /history
+        message.put("windowStart", historyService.windowStart());
+        messagingTemplate.convertAndSend(HISTORY_TOPIC, message);
+    }
+
+    @Scheduled(fixedDelayString = "${parking.dashboard.push-interval-ms:1000}")
+    public void publish() {
+        publishActivity();
+        publishHealth();
+    }
+
+    private void publishActivity() {
+        List<ParkingEvent> events;
+        synchronized (pendingEvents) {
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+            events = new ArrayList<>(pendingEvents);
+            pendingEvents.clear();
+        }
+        messagingTemplate.convertAndSend(ACTIVITY_TOPIC, events);
+    }
+
+    private synchronized void publishHealth() {
+        if (!subscriptions.hasSubscribers(HEALTH_TOPIC)) {
+            // Al volver a haber suscriptores se publica en el primer tick
+            lastHealth = null;
+            healthDirty = true;
+            return;
+        }
+        long now = System.currentTimeMillis();
+        boolean heartbeatDue = now - lastHealthPublishedAt >= healthHeartbeatMillis;
+        if (!healthDirty && !heartbeatDue) {
+            return;
+        }
+        healthDirty = false;
+        MonitoringService.HealthSnapshot health = monitoringService.getHealthSnapshot();
+        if (health.sameStateAs(lastHealth) && !heartbeatDue) {
+            return;
+        }
+        lastHealth = health;
+        lastHealthPublishedAt = now;
+        messagingTemplate.convertAndSend(HEALTH_TOPIC, health);
+    }
+}
@@ -0,0 +1,99 @@
+package smartparking.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import smartparking.model.SpotStatus;
+import smartparking.service.ParkingService;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Comparativa de tamaño y tiempo de codificación/decodificación entre los deltas JSON de
+ * {@code /topic/parking-updates} y el formato binario de {@link DeltaFrameCodec}.
+ * Uso: java smartparking.web.DeltaCodecBenchmark [plazas] [iteraciones]
+ */
+public class DeltaCodecBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int spots = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        ObjectMapper mapper = new ObjectMapper();
+        String stream = Long.toHexString(new Random().nextLong());
+
+        System.out.println("Parking de " + spots + " plazas, " + iterations + " iteraciones");
+        for (int changes : new int[] {10, spots / 10, spots}) {
+            ParkingDeltaFrame frame = buildFrame(spots, changes, new Random(changes));
+            byte[] json = mapper.writeValueAsBytes(jsonMessage(stream, frame));
+            byte[] binary = DeltaFrameCodec.encode(stream, frame);
+            checkRoundTrip(stream, frame, DeltaFrameCodec.decode(binary));
+
+            for (int i = 0; i < iterations; i++) {
+                mapper.writeValueAsBytes(jsonMessage(stream, frame));
+                mapper.readValue(json, Map.class);
+                DeltaFrameCodec.decode(DeltaFrameCodec.encode(stream, frame));
+            }
+
+            System.out.printf("%n%d cambios: JSON %d B, binario %d B (%.1fx menor)%n",
+                    changes, json.length, binary.length, (double) json.length / binary.length);
+            report("  JSON    codificar", iterations, () -> mapper.writeValueAsBytes(jsonMessage(stream, frame)).length);
+            report("  binario codificar", iterations, () -> DeltaFrameCodec.encode(stream, frame).length);
+            report("  JSON    decodificar", iterations, () -> mapper.readValue(json, Map.class).size());
+            report("  binario decodificar", iterations, () -> DeltaFrameCodec.decode(binary).frame().size());
+        }
+    }
+
+    // Como en ParkingDeltaPublisher: los dos formatos llevan el stream
+    private static Map<String, Object> jsonMessage(String stream, ParkingDeltaFrame frame) {
+        Map<String, Object> message = frame.toJsonMessage();
+        message.put("stream", stream);
+        return message;
+    }
+
+    private static ParkingDeltaFrame buildFrame(int spots, int changes, Random random) {
+        int[] ids = random.ints(1, spots + 1).distinct().limit(changes).toArray();
+        byte[] statuses = new byte[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            statuses[i] = (byte) random.nextInt(SpotStatus.values().length);
+        }
+        int occupied = random.nextInt(spots);
+        return new ParkingDeltaFrame(random.nextInt(1_000_000), System.currentTimeMillis(), ids, statuses,
+                new ParkingService.ParkingStatistics("HE12", spots, spots - occupied, occupied, 0));
+    }
+
+    private static void checkRoundTrip(String stream, ParkingDeltaFrame original, DeltaFrameCodec.Decoded result) {
+        ParkingDeltaFrame decoded = result.frame();
+        int n = original.size();
+        long[] expected = new long[n];
+        long[] actual = new long[decoded.size()];
+        for (int i = 0; i < n; i++) {
+            expected[i] = (long) original.spotIds()[i] << 2 | original.statuses()[i];
+        }
+        for (int i = 0; i < decoded.size(); i++) {
+            actual[i] = (long) decoded.spotIds()[i] << 2 | decoded.statuses()[i];
+        }
+        Arrays.sort(expected);
+        if (!Arrays.equals(expected, actual)
+                || !stream.equals(result.stream())
+                || original.sequence() != decoded.sequence()
+                || original.timestampMillis() != decoded.timestampMillis()
+                || original.counts().getFree() != decoded.counts().getFree()) {
+            throw new IllegalStateException("El frame binario no coincide con el original");
+        }
+    }
+
+    private static void report(String label, int iterations, Run run) throws Exception {
+        long start = System.nanoTime();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += run.run();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %8.1f us/frame (checksum %d)%n", label, elapsed / 1000.0 / iterations, sink);
+    }
+
+    @FunctionalInterface
+    private interface Run {
+        int run() throws Exception;
+    }
+}
@@ -0,0 +1,165 @@
+package smartparking.web;
+
+import smartparking.service.ParkingService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Codificación binaria de {@link ParkingDeltaFrame} para el subprotocolo {@code delta-format: binary}.
+ *
+ * <pre>
+ * byte    versión (2)
+ * varint  longitud del identificador de stream, seguida de sus bytes UTF-8
+ * varint  secuencia
+ * varint  timestamp base del frame (epoch ms)
+ * varint  total, libres, ocupadas, fuera de servicio
+ * varint  número de cambios
+ * varint  por cambio: (id - id anterior) &lt;&lt; 2 | ordinal del estado, con los ids en orden ascendente
+ * </pre>
+ *
+ * Con los ids ordenados la diferencia suele caber en 6 bits, así que la mayoría de cambios ocupan
+ * un solo byte. Los varint son LEB128 sin signo (7 bits por byte).
+ *
+ * El stream y la secuencia son los mismos que los del JSON, así que un cliente de
+ * {@code /ws-parking-native} se resincroniza igual: si la secuencia no es la siguiente a la última
+ * aplicada, o tras reconectar, se suscribe a {@code /app/parking-updates/resync} con las cabeceras
+ * {@code stream} y {@code since} (ver {@link ParkingStreamController}). Esa respuesta es siempre
+ * JSON, también para los clientes binarios; si el stream ha cambiado llega una foto completa.
+ */
+public final class DeltaFrameCodec {
+
+    public static final byte VERSION = 2;
+    private static final int STATUS_BITS = 2;
+    private static final int STATUS_MASK = (1 << STATUS_BITS) - 1;
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private DeltaFrameCodec() {
+    }
+
+    public static byte[] encode(String stream, ParkingDeltaFrame frame) {
+        int n = frame.size();
+        // id y estado en un long para ordenar ambos a la vez
+        long[] packed = new long[n];
+        boolean sorted = true;
+        for (int i = 0; i < n; i++) {
+            packed[i] = (long) frame.spotIds()[i] << STATUS_BITS | (frame.statuses()[i] & STATUS_MASK);
+            sorted &= i == 0 || packed[i] > packed[i - 1];
+        }
+        // Los frames de una proyección del feed ya llegan en orden ascendente
+        if (!sorted) {
+            Arrays.sort(packed);
+        }
+
+        byte[] streamBytes = stream.getBytes(StandardCharsets.UTF_8);
+        // Cota superior: el stream, 8 varints de cabecera y uno por cambio, de como mucho 10 bytes cada uno
+        Writer out = new Writer(1 + streamBytes.length + (8 + n) * MAX_VARINT_BYTES);
+        out.buffer[out.position++] = VERSION;
+        out.varint(streamBytes.length);
+        out.bytes(streamBytes);
+        out.varint(frame.sequence());
+        out.varint(frame.timestampMillis());
+        ParkingService.ParkingStatistics counts = frame.counts();
+        out.varint(counts.getTotal());
+        out.varint(counts.getFree());
+        out.varint(counts.getOccupied());
+        out.varint(counts.getOutOfService());
+        out.varint(n);
+        long previousId = 0;
+        for (long entry : packed) {
+            long id = entry >>> STATUS_BITS;
+            out.varint((id - previousId) << STATUS_BITS | (entry & STATUS_MASK));
+            previousId = id;
+        }
+        return Arrays.copyOf(out.buffer, out.position);
+    }
+
+    /**
+     * Inverso de {@link #encode}; los cambios salen ordenados por id y los contadores sin nombre.
+     */
+    public static Decoded decode(byte[] data) {
+        Reader in = new Reader(data);
+        int version = data.length > 0 ? data[in.position++] : -1;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Versión de delta binario no soportada: " + version);
+        }
+        String stream = new String(in.bytes((int) in.varint()), StandardCharsets.UTF_8);
+        long sequence = in.varint();
+        long timestamp = in.varint();
+        int total = (int) in.varint();
+        int free = (int) in.varint();
+        int occupied = (int) in.varint();
+        int outOfService = (int) in.varint();
+        int n = (int) in.varint();
+        int[] ids = new int[n];
+        byte[] statuses = new byte[n];
+        int id = 0;
+        for (int i = 0; i < n; i++) {
+            long entry = in.varint();
+            id += (int) (entry >>> STATUS_BITS);
+            ids[i] = id;
+            statuses[i] = (byte) (entry & STATUS_MASK);
+        }
+        return new Decoded(stream, new ParkingDeltaFrame(sequence, timestamp, ids, statuses,
+                new ParkingService.ParkingStatistics(null, total, free, occupied, outOfService)));
+    }
+
+    public record Decoded(String stream, ParkingDeltaFrame frame) {}
+
+    private static final class Writer {
+
+        private final byte[] buffer;
+        private int position;
+
+        private Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        private void varint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[position++] = (byte) value;
+        }
+
+        private void bytes(byte[] value) {
+            System.arraycopy(value, 0, buffer, position, value.length);
+            position += value.length;
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] data;
+        private int position;
+
+        private Reader(byte[] data) {
+            this.data = data;
+        }
+
+        private long varint() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                if (position >= data.length) {
+                    throw new IllegalArgumentException("Delta binario truncado");
+                }
+                byte b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Varint demasiado largo");
+        }
+
+        private byte[] bytes(int length) {
+            if (length < 0 || length > data.length - position) {
+                throw new IllegalArgumentException("Delta binario truncado");
+            }
+            byte[] value = Arrays.copyOfRange(data, position, position + length);
+            position += length;
+            return value;
+        }
+    }
+}
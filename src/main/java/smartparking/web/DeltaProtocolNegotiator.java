@@ -0,0 +1,63 @@
+package smartparking.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Negocia el formato de los deltas en el CONNECT de STOMP.
+ *
+ * Un cliente que envía la cabecera {@code delta-format: binary} por el endpoint nativo recibe los
+ * deltas en binario ({@link DeltaFrameCodec}): sus SUBSCRIBE a un destino de deltas se redirigen
+ * a la variante {@code .bin}. SockJS solo transporta texto, así que por {@code /ws-parking} se
+ * sigue usando JSON aunque se pida binario; los clientes existentes no cambian. El frame binario
+ * lleva el stream y la secuencia, así que la resincronización es la misma en los dos formatos.
+ */
+@Component
+public class DeltaProtocolNegotiator implements ChannelInterceptor {
+
+    private static final Logger log = LoggerFactory.getLogger(DeltaProtocolNegotiator.class);
+
+    public static final String FORMAT_HEADER = "delta-format";
+    public static final String BINARY = "binary";
+    /** Atributo de sesión que pone el handshake del endpoint nativo. */
+    public static final String NATIVE_TRANSPORT_ATTRIBUTE = "parking.nativeTransport";
+    private static final String FORMAT_ATTRIBUTE = "parking.deltaFormat";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        if (accessor.getCommand() == null || attributes == null) {
+            return message;
+        }
+
+        if (accessor.getCommand() == StompCommand.CONNECT) {
+            String requested = accessor.getFirstNativeHeader(FORMAT_HEADER);
+            if (BINARY.equalsIgnoreCase(requested)) {
+                if (Boolean.TRUE.equals(attributes.get(NATIVE_TRANSPORT_ATTRIBUTE))) {
+                    attributes.put(FORMAT_ATTRIBUTE, BINARY);
+                } else {
+                    log.debug("Session {} asked for binary deltas over SockJS; keeping JSON", accessor.getSessionId());
+                }
+            }
+            return message;
+        }
+
+        if (accessor.getCommand() == StompCommand.SUBSCRIBE
+                && BINARY.equals(attributes.get(FORMAT_ATTRIBUTE))
+                && ParkingDeltaPublisher.isDeltaDestination(accessor.getDestination())) {
+            accessor.setDestination(ParkingDeltaPublisher.binaryDestination(accessor.getDestination()));
+            return MessageBuilder.createMessage(message.getPayload(), accessor.getMessageHeaders());
+        }
+        return message;
+    }
+}
@@ -0,0 +1,51 @@
+package smartparking.web;
+
+import smartparking.model.SpotStatus;
+import smartparking.service.ParkingService;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Delta de un tick del WebSocket: el último estado de cada plaza que cambió en la ventana,
+ * con un número de secuencia y los contadores del parking al cerrar el tick.
+ *
+ * Los arrays son paralelos ({@code statuses[i]} es el ordinal de {@link SpotStatus} de
+ * {@code spotIds[i]}) y no se modifican una vez construido el frame.
+ */
+public record ParkingDeltaFrame(
+        long sequence,
+        long timestampMillis,
+        int[] spotIds,
+        byte[] statuses,
+        ParkingService.ParkingStatistics counts
+) {
+
+    private static final SpotStatus[] STATUSES = SpotStatus.values();
+
+    public int size() {
+        return spotIds.length;
+    }
+
+    /**
+     * Mensaje JSON de {@code /topic/parking-updates}: {@code changes} es una lista de pares
+     * {@code [spotId, status]}.
+     */
+    public Map<String, Object> toJsonMessage() {
+        Object[][] changes = new Object[spotIds.length][];
+        for (int i = 0; i < spotIds.length; i++) {
+            changes[i] = new Object[] {spotIds[i], STATUSES[statuses[i]].name()};
+        }
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("seq", sequence);
+        message.put("timestamp", LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault())
+                .format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        message.put("changes", changes);
+        message.put("counts", counts);
+        return message;
+    }
+}
@@ -0,0 +1,109 @@
+package smartparking.web;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Envía cada {@link ParkingDeltaFrame} en los formatos que tienen suscriptores: JSON en
+ * {@code /topic/parking-updates} y binario en {@code /topic/parking-updates.bin}. Cada formato se
+ * serializa una sola vez por frame, sea cual sea el número de clientes.
+ *
+ * Guarda además los últimos frames en un ring acotado para que un cliente que se reconecta pida
+ * solo lo que se perdió ({@link #framesSince}). El identificador de stream cambia en cada arranque:
+ * las secuencias de otro stream no son comparables.
+ */
+@Component
+public class ParkingDeltaPublisher {
+
+    public static final String DESTINATION = "/topic/parking-updates";
+    private static final String BINARY_SUFFIX = ".bin";
+    private static final Map<String, Object> BINARY_HEADERS =
+            Map.of(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_OCTET_STREAM);
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StompSubscriptionTracker subscriptions;
+    private final String streamId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+
+    // Ring de los últimos frames publicados, indexado por secuencia
+    private final ParkingDeltaFrame[] replay;
+    private long latestSequence;
+
+    public ParkingDeltaPublisher(
+            SimpMessagingTemplate messagingTemplate,
+            StompSubscriptionTracker subscriptions,
+            @Value("${parking.websocket.replay-size:256}") int replaySize
+    ) {
+        this.messagingTemplate = messagingTemplate;
+        this.subscriptions = subscriptions;
+        this.replay = new ParkingDeltaFrame[Math.max(1, replaySize)];
+    }
+
+    static boolean isDeltaDestination(String destination) {
+        return DESTINATION.equals(destination);
+    }
+
+    static String binaryDestination(String destination) {
+        return destination + BINARY_SUFFIX;
+    }
+
+    public String getStreamId() {
+        return streamId;
+    }
+
+    public void publish(ParkingDeltaFrame frame) {
+        synchronized (replay) {
+            replay[(int) (frame.sequence() % replay.length)] = frame;
+            latestSequence = Math.max(latestSequence, frame.sequence());
+        }
+
+        if (subscriptions.hasSubscribers(DESTINATION)) {
+            messagingTemplate.convertAndSend(DESTINATION, toJsonMessage(frame));
+        }
+        String binary = binaryDestination(DESTINATION);
+        if (subscriptions.hasSubscribers(binary)) {
+            messagingTemplate.convertAndSend(binary, DeltaFrameCodec.encode(streamId, frame), BINARY_HEADERS);
+        }
+    }
+
+    public Map<String, Object> toJsonMessage(ParkingDeltaFrame frame) {
+        Map<String, Object> message = frame.toJsonMessage();
+        message.put("stream", streamId);
+        return message;
+    }
+
+    /**
+     * Frames posteriores a {@code since} del stream indicado, en orden; vacío si no hay ninguno
+     * nuevo y {@code null} si ya no se pueden reconstruir (otro stream o fuera del ring).
+     */
+    public List<ParkingDeltaFrame> framesSince(String stream, long since) {
+        synchronized (replay) {
+            if (!streamId.equals(stream) || since < 0 || since > latestSequence
+                    || latestSequence - since > replay.length) {
+                return null;
+            }
+            List<ParkingDeltaFrame> frames = new ArrayList<>((int) (latestSequence - since));
+            for (long sequence = since + 1; sequence <= latestSequence; sequence++) {
+                ParkingDeltaFrame frame = replay[(int) (sequence % replay.length)];
+                if (frame == null || frame.sequence() != sequence) {
+                    return null;
+                }
+                frames.add(frame);
+            }
+            return frames;
+        }
+    }
+
+    public long getLatestSequence() {
+        synchronized (replay) {
+            return latestSequence;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package smartparking.web;
+
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+import smartparking.model.ParkingLot;
+import smartparking.service.ParkingService;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resincronización del stream de deltas tras una reconexión o un hueco en las secuencias.
+ *
+ * El cliente se suscribe a {@code /app/parking-updates/resync} con las cabeceras {@code stream} y
+ * {@code since} (última secuencia aplicada) y recibe una única respuesta: los frames que le faltan
+ * ({@code type: replay}) o, si ya no están en el ring o el servidor se ha reiniciado, una foto
+ * compacta del parking ({@code type: snapshot}) con un carácter por plaza (ordinal del estado).
+ */
+@Controller
+public class ParkingStreamController {
+
+    private final ParkingDeltaPublisher publisher;
+    private final ParkingService parkingService;
+
+    public ParkingStreamController(ParkingDeltaPublisher publisher, ParkingService parkingService) {
+        this.publisher = publisher;
+        this.parkingService = parkingService;
+    }
+
+    @SubscribeMapping("/parking-updates/resync")
+    public Map<String, Object> resync(SimpMessageHeaderAccessor headers) {
+        String stream = headers.getFirstNativeHeader("stream");
+        long since = parseSequence(headers.getFirstNativeHeader("since"));
+
+        List<ParkingDeltaFrame> frames = since >= 0 ? publisher.framesSince(stream, since) : null;
+        if (frames != null) {
+            List<Map<String, Object>> messages = new ArrayList<>(frames.size());
+            for (ParkingDeltaFrame frame : frames) {
+                messages.add(publisher.toJsonMessage(frame));
+            }
+            Map<String, Object> replay = new LinkedHashMap<>();
+            replay.put("type", "replay");
+            replay.put("stream", publisher.getStreamId());
+            replay.put("seq", frames.isEmpty() ? since : frames.get(frames.size() - 1).sequence());
+            replay.put("frames", messages);
+            return replay;
+        }
+        return snapshot();
+    }
+
+    /**
+     * Foto de una versión del parking. La secuencia se lee antes: los frames posteriores pueden
+     * repetir cambios ya incluidos, lo que es inocuo porque llevan estados absolutos.
+     */
+    private Map<String, Object> snapshot() {
+        long sequence = publisher.getLatestSequence();
+        ParkingLot lot = parkingService.getParkingLot();
+        ParkingLot.Snapshot state = lot.getSnapshot();
+        ParkingLot.Occupancy occupancy = state.occupancy();
+
+        StringBuilder statuses = new StringBuilder(state.size());
+        for (int id = 1; id <= state.size(); id++) {
+            statuses.append((char) ('0' + state.statusOf(id).ordinal()));
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("type", "snapshot");
+        snapshot.put("stream", publisher.getStreamId());
+        snapshot.put("seq", sequence);
+        snapshot.put("statuses", statuses.toString());
+        snapshot.put("counts", new ParkingService.ParkingStatistics(lot.getName(), occupancy.total(),
+                occupancy.free(), occupancy.occupied(), occupancy.outOfService()));
+        return snapshot;
+    }
+
+    private static long parseSequence(String value) {
+        if (value == null || value.isBlank()) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,430 @@
+package smartparking.web;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de salida acotada por sesión WebSocket.
+ *
+ * Se instala como decorador del handler STOMP: cada sesión se envuelve en una {@link BoundedSession}
+ * cuyo {@code sendMessage} solo encola y vuelve, y un pool compartido vacía la cola hacia el socket.
+ * Así un cliente lento no retiene los hilos del canal de salida ni acumula frames sin límite.
+ *
+ * Con la cola llena se descarta el mensaje más antiguo. Con {@link OverflowPolicy#CONFLATE}, además,
+ * un mensaje de un topic de estado ({@code parking.websocket.session.state-topics}) sustituye al
+ * pendiente del mismo destino: solo importa el último. Los deltas de {@code /topic/parking-updates}
+ * no se fusionan; si se pierde alguno el cliente ve el hueco de secuencia y pide resync.
+ *
+ * Un vigilante cierra las sesiones con un envío atascado más de {@code send-time-limit-ms} o con
+ * más de {@code max-drops} descartes en una ventana de {@code drop-window-ms}.
+ *
+ * El pool de vaciado ({@code flush-threads}) es compartido, así que hay dos compromisos:
+ * <ul>
+ *   <li>Cada tarea envía como mucho {@code flush-batch} frames y, si quedan más, se vuelve a encolar
+ *   detrás de las demás sesiones: un cliente con mucho tráfico no acapara un hilo.</li>
+ *   <li>Un socket lleno bloquea su hilo dentro del envío. Como mucho {@code flush-threads} sockets
+ *   pueden estar bloqueados a la vez, y cada uno durante {@code send-time-limit-ms} (también se fija
+ *   como timeout de envío bloqueante de Tomcat, para que el propio envío falle). Un límite corto
+ *   (2 s por defecto) desconecta antes a clientes con redes lentas pero legítimas; uno largo deja
+ *   que unos pocos sockets atascados retrasen a todos. Conviene que {@code flush-threads} supere
+ *   con holgura el número de clientes lentos esperados a la vez.</li>
+ * </ul>
+ */
+@Component
+public class SessionOutboundQueues implements WebSocketHandlerDecoratorFactory {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionOutboundQueues.class);
+    private static final String MESSAGE_PREFIX = "MESSAGE\n";
+    private static final String DESTINATION_HEADER = "\ndestination:";
+    // Las cabeceras STOMP de un MESSAGE caben de sobra en este prefijo
+    private static final int HEADER_SCAN_BYTES = 512;
+    private static final String TOMCAT_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    /**
+     * Qué hace una sesión con mensajes de topics de estado cuando ya hay otros pendientes.
+     */
+    public enum OverflowPolicy {
+        /** Todos los mensajes se encolan; si no caben se descarta el más antiguo. */
+        DROP_OLDEST,
+        /** El último mensaje de un topic de estado sustituye al pendiente del mismo destino. */
+        CONFLATE
+    }
+
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final String[] stateTopics;
+    private final long sendTimeLimitMillis;
+    private final int maxDrops;
+    private final long dropWindowMillis;
+    private final int flushBatch;
+    private final ExecutorService flushers;
+    private final ScheduledExecutorService watchdog;
+    private final Map<String, BoundedSession> sessions = new ConcurrentHashMap<>();
+
+    public SessionOutboundQueues(
+            @Value("${parking.websocket.session.queue-capacity:256}") int capacity,
+            @Value("${parking.websocket.session.overflow:CONFLATE}") OverflowPolicy overflowPolicy,
+            @Value("${parking.websocket.session.state-topics:/topic/carparks/}") String stateTopics,
+            @Value("${parking.websocket.session.send-time-limit-ms:2000}") long sendTimeLimitMillis,
+            @Value("${parking.websocket.session.max-drops:500}") int maxDrops,
+            @Value("${parking.websocket.session.drop-window-ms:30000}") long dropWindowMillis,
+            @Value("${parking.websocket.session.flush-threads:32}") int flushThreads,
+            @Value("${parking.websocket.session.flush-batch:16}") int flushBatch
+    ) {
+        this.capacity = Math.max(1, capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.stateTopics = stateTopics.isBlank() ? new String[0] : stateTopics.trim().split("\\s*,\\s*");
+        this.sendTimeLimitMillis = sendTimeLimitMillis;
+        this.maxDrops = maxDrops;
+        this.dropWindowMillis = Math.max(1000, dropWindowMillis);
+        this.flushBatch = Math.max(1, flushBatch);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.flushers = Executors.newFixedThreadPool(Math.max(1, flushThreads), runnable -> {
+            Thread thread = new Thread(runnable, "ws-outbound-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ws-outbound-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Con límites cortos se revisa más a menudo para no alargarlos hasta un segundo entero
+        long inspectMillis = sendTimeLimitMillis > 0 ? Math.max(100, Math.min(1000, sendTimeLimitMillis / 4)) : 1000;
+        this.watchdog.scheduleWithFixedDelay(this::inspect, inspectMillis, inspectMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+                BoundedSession bounded = new BoundedSession(session);
+                sessions.put(session.getId(), bounded);
+                // El handler STOMP guarda esta sesión y envía siempre a través de ella
+                super.afterConnectionEstablished(bounded);
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                BoundedSession bounded = sessions.remove(session.getId());
+                if (bounded != null) {
+                    bounded.discard();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    /**
+     * Destino de un frame MESSAGE si pertenece a un topic de estado; null si no se puede fusionar.
+     */
+    String conflationKey(WebSocketMessage<?> message) {
+        if (overflowPolicy != OverflowPolicy.CONFLATE || stateTopics.length == 0) {
+            return null;
+        }
+        String head;
+        if (message instanceof TextMessage text) {
+            head = text.getPayload();
+        } else if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload().duplicate();
+            byte[] bytes = new byte[Math.min(HEADER_SCAN_BYTES, payload.remaining())];
+            payload.get(bytes);
+            head = new String(bytes, StandardCharsets.ISO_8859_1);
+        } else {
+            return null;
+        }
+        if (!head.startsWith(MESSAGE_PREFIX)) {
+            return null;
+        }
+        int headersEnd = head.indexOf("\n\n");
+        int start = head.indexOf(DESTINATION_HEADER, MESSAGE_PREFIX.length() - 1);
+        if (start < 0 || (headersEnd >= 0 && start > headersEnd)) {
+            return null;
+        }
+        start += DESTINATION_HEADER.length();
+        int end = head.indexOf('\n', start);
+        String destination = end < 0 ? head.substring(start) : head.substring(start, end);
+        for (String prefix : stateTopics) {
+            if (destination.startsWith(prefix)) {
+                return destination;
+            }
+        }
+        return null;
+    }
+
+    private void inspect() {
+        long now = System.currentTimeMillis();
+        for (BoundedSession session : sessions.values()) {
+            try {
+                session.inspect(now);
+            } catch (RuntimeException e) {
+                log.warn("Outbound watchdog failed for session {}: {}", session.getId(), e.toString());
+            }
+        }
+    }
+
+    public List<SessionStats> getSessionStats() {
+        List<SessionStats> stats = new ArrayList<>(sessions.size());
+        for (BoundedSession session : sessions.values()) {
+            stats.add(session.stats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        flushers.shutdownNow();
+    }
+
+    public record SessionStats(String sessionId, int queued, int peakQueued, long sent,
+                               long dropped, long conflated, long sendInProgressMillis) {}
+
+    /**
+     * Sesión con cola propia. Solo una tarea de vaciado a la vez escribe en la sesión real,
+     * que no admite envíos concurrentes.
+     */
+    final class BoundedSession extends WebSocketSessionDecorator {
+
+        private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+        private boolean flushing;
+        private int peakQueued;
+        private long sent;
+        private long dropped;
+        private long conflated;
+        private long droppedInWindow;
+        private long windowStart = System.currentTimeMillis();
+        // Inicio del envío en curso al socket, 0 si no hay ninguno
+        private volatile long sendStartedAt;
+        private volatile boolean closing;
+        private CloseStatus closeAfterFlush;
+
+        private BoundedSession(WebSocketSession delegate) {
+            super(delegate);
+            if (sendTimeLimitMillis > 0 && delegate instanceof NativeWebSocketSession nativeSession) {
+                Session session = nativeSession.getNativeSession(Session.class);
+                if (session != null) {
+                    session.getUserProperties().put(TOMCAT_SEND_TIMEOUT, sendTimeLimitMillis);
+                }
+            }
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            if (closing || !isOpen()) {
+                return;
+            }
+            String key = conflationKey(message);
+            boolean startFlush;
+            synchronized (this) {
+                if (key == null || !replacePending(key, message)) {
+                    if (queue.size() >= capacity) {
+                        dropOldest();
+                    }
+                    queue.addLast(new Pending(message, key));
+                    peakQueued = Math.max(peakQueued, queue.size());
+                }
+                startFlush = !flushing;
+                flushing = true;
+            }
+            if (startFlush) {
+                flushers.execute(this::flush);
+            }
+        }
+
+        private boolean replacePending(String key, WebSocketMessage<?> message) {
+            for (Pending pending : queue) {
+                if (key.equals(pending.conflationKey)) {
+                    pending.message = message;
+                    conflated++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Descarta el MESSAGE más antiguo; los frames de control (CONNECTED, RECEIPT, ERROR) se conservan.
+         */
+        private void dropOldest() {
+            Iterator<Pending> it = queue.iterator();
+            while (it.hasNext()) {
+                if (isMessageFrame(it.next().message)) {
+                    it.remove();
+                    dropped++;
+                    droppedInWindow++;
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Envía como mucho {@code flushBatch} frames; si quedan más se vuelve a encolar en el pool
+         * para que las demás sesiones avancen entre medias.
+         */
+        private void flush() {
+            for (int batch = 0; ; batch++) {
+                if (batch >= flushBatch) {
+                    synchronized (this) {
+                        if (!queue.isEmpty() && !closing) {
+                            // flushing sigue a true: nadie más lanza otra tarea para esta sesión
+                            flushers.execute(this::flush);
+                            return;
+                        }
+                    }
+                }
+                WebSocketMessage<?> message;
+                CloseStatus closeStatus;
+                synchronized (this) {
+                    Pending next = queue.pollFirst();
+                    message = next == null || closing ? null : next.message;
+                    closeStatus = message == null ? closeAfterFlush : null;
+                    if (message == null) {
+                        flushing = false;
+                    }
+                }
+                if (message == null) {
+                    if (closeStatus != null) {
+                        terminate(closeStatus);
+                    }
+                    return;
+                }
+                sendStartedAt = System.currentTimeMillis();
+                try {
+                    getDelegate().sendMessage(message);
+                    synchronized (this) {
+                        sent++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.debug("Outbound send failed for session {}: {}", getId(), e.toString());
+                    terminate(CloseStatus.SESSION_NOT_RELIABLE);
+                } finally {
+                    sendStartedAt = 0;
+                }
+            }
+        }
+
+        private void inspect(long now) {
+            if (closing) {
+                return;
+            }
+            long started = sendStartedAt;
+            if (sendTimeLimitMillis > 0 && started != 0 && now - started > sendTimeLimitMillis) {
+                log.info("Closing WebSocket session {}: send blocked for {} ms", getId(), now - started);
+                terminate(CloseStatus.SESSION_NOT_RELIABLE);
+                return;
+            }
+            long drops;
+            synchronized (this) {
+                if (now - windowStart < dropWindowMillis) {
+                    return;
+                }
+                drops = droppedInWindow;
+                droppedInWindow = 0;
+                windowStart = now;
+            }
+            if (maxDrops > 0 && drops > maxDrops) {
+                log.info("Closing WebSocket session {}: {} frames dropped in {} ms", getId(), drops, dropWindowMillis);
+                terminate(CloseStatus.SESSION_NOT_RELIABLE);
+            }
+        }
+
+        /**
+         * Cierre pedido por el handler STOMP (p. ej. tras un ERROR): se envía antes lo pendiente.
+         */
+        @Override
+        public void close(CloseStatus status) throws IOException {
+            synchronized (this) {
+                if (flushing && !closing) {
+                    closeAfterFlush = status;
+                    return;
+                }
+            }
+            getDelegate().close(status);
+        }
+
+        private void terminate(CloseStatus status) {
+            if (closing) {
+                return;
+            }
+            closing = true;
+            discard();
+            try {
+                getDelegate().close(status);
+            } catch (IOException | RuntimeException e) {
+                log.debug("Could not close WebSocket session {}: {}", getId(), e.toString());
+            }
+        }
+
+        private synchronized void discard() {
+            closing = true;
+            queue.clear();
+        }
+
+        private synchronized SessionStats stats() {
+            long started = sendStartedAt;
+            return new SessionStats(getId(), queue.size(), peakQueued, sent, dropped, conflated,
+                    started == 0 ? 0 : System.currentTimeMillis() - started);
+        }
+    }
+
+    private static boolean isMessageFrame(WebSocketMessage<?> message) {
+        if (message instanceof TextMessage text) {
+            return text.getPayload().startsWith(MESSAGE_PREFIX);
+        }
+        if (message instanceof BinaryMessage binary) {
+            ByteBuffer payload = binary.getPayload();
+            if (payload.remaining() < MESSAGE_PREFIX.length()) {
+                return false;
+            }
+            for (int i = 0; i < MESSAGE_PREFIX.length(); i++) {
+                if (payload.get(payload.position() + i) != MESSAGE_PREFIX.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static final class Pending {
+
+        private WebSocketMessage<?> message;
+        private final String conflationKey;
+
+        private Pending(WebSocketMessage<?> message, String conflationKey) {
+            this.message = message;
+            this.conflationKey = conflationKey;
+        }
+    }
+}
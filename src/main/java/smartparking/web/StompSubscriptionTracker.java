@@ -0,0 +1,95 @@
+package smartparking.web;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cuenta las suscripciones STOMP activas por destino, para no serializar mensajes que
+ * nadie va a recibir. Se engancha al canal de entrada de clientes, después de cualquier
+ * interceptor que reescriba destinos.
+ */
+@Component
+public class StompSubscriptionTracker implements ChannelInterceptor {
+
+    // sesión -> (id de suscripción -> destino)
+    private final Map<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> counts = new ConcurrentHashMap<>();
+
+    @Override
+    public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
+        if (!sent) {
+            return;
+        }
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        if (accessor.getCommand() == null || accessor.getSessionId() == null) {
+            return;
+        }
+        String sessionId = accessor.getSessionId();
+        switch (accessor.getCommand()) {
+            case SUBSCRIBE -> {
+                String destination = accessor.getDestination();
+                if (destination != null && accessor.getSubscriptionId() != null) {
+                    String previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                            .put(accessor.getSubscriptionId(), destination);
+                    if (previous != null) {
+                        decrement(previous);
+                    }
+                    counts.computeIfAbsent(destination, key -> new AtomicInteger()).incrementAndGet();
+                }
+            }
+            case UNSUBSCRIBE -> {
+                Map<String, String> subscriptions = sessions.get(sessionId);
+                if (subscriptions != null && accessor.getSubscriptionId() != null) {
+                    String destination = subscriptions.remove(accessor.getSubscriptionId());
+                    if (destination != null) {
+                        decrement(destination);
+                    }
+                }
+            }
+            case DISCONNECT -> {
+                Map<String, String> subscriptions = sessions.remove(sessionId);
+                if (subscriptions != null) {
+                    subscriptions.values().forEach(this::decrement);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void decrement(String destination) {
+        counts.computeIfPresent(destination, (key, count) -> count.decrementAndGet() <= 0 ? null : count);
+    }
+
+    public int subscriberCount(String destination) {
+        AtomicInteger count = counts.get(destination);
+        return count == null ? 0 : count.get();
+    }
+
+    public boolean hasSubscribers(String destination) {
+        return subscriberCount(destination) > 0;
+    }
+
+    /**
+     * Destinos con al menos un suscriptor que empiezan por el prefijo. Recorre solo los
+     * destinos suscritos, no todos los posibles.
+     */
+    public List<String> subscribedDestinations(String prefix) {
+        List<String> destinations = new ArrayList<>();
+        for (String destination : counts.keySet()) {
+            if (destination.startsWith(prefix)) {
+                destinations.add(destination);
+            }
+        }
+        return destinations;
+    }
+}
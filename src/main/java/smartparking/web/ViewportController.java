@@ -0,0 +1,45 @@
+package smartparking.web;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Controller;
+import smartparking.service.CarparkGeoIndex;
+
+import java.util.Map;
+
+/**
+ * Alta y actualización del área visible del mapa de cada sesión (ver {@link ViewportSubscriptions}).
+ *
+ * El cliente envía a {@code /app/viewport} {@code {south, west, north, east}} al abrir el mapa y en
+ * cada desplazamiento o zoom, y a {@code /app/viewport/clear} cuando deja de mostrarlo.
+ */
+@Controller
+public class ViewportController {
+
+    private static final Logger log = LoggerFactory.getLogger(ViewportController.class);
+
+    private final ViewportSubscriptions viewports;
+
+    public ViewportController(ViewportSubscriptions viewports) {
+        this.viewports = viewports;
+    }
+
+    @MessageMapping("/viewport")
+    public void updateViewport(@Payload Map<String, Double> bounds, SimpMessageHeaderAccessor headers) {
+        try {
+            CarparkGeoIndex.Box box = new CarparkGeoIndex.Box(
+                    bounds.get("south"), bounds.get("west"), bounds.get("north"), bounds.get("east"));
+            viewports.update(headers.getSessionId(), box);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            log.debug("Ignoring viewport from session {}: {}", headers.getSessionId(), bounds);
+        }
+    }
+
+    @MessageMapping("/viewport/clear")
+    public void clearViewport(SimpMessageHeaderAccessor headers) {
+        viewports.remove(headers.getSessionId());
+    }
+}
@@ -0,0 +1,209 @@
+package smartparking.web;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import smartparking.integration.CarparkIdDictionary;
+import smartparking.integration.CarparkMetadata;
+import smartparking.service.CarparkGeoIndex;
+import smartparking.service.RealTimeParkingUpdater;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Suscripciones por área visible del mapa.
+ *
+ * Cada sesión STOMP registra su rectángulo con {@code /app/viewport} y recibe en
+ * {@code /user/queue/viewport} primero los carparks que contiene ({@code type: snapshot}) y después,
+ * en cada ciclo del feed, solo los que cambian dentro de él ({@code type: changes}).
+ *
+ * Los rectángulos se indexan por las celdas de {@link CarparkGeoIndex} que cubren, así que un
+ * cambio solo se compara con las sesiones de su celda; los que cubren más de
+ * {@code max-cells} celdas (ciudad entera) se comprueban aparte. Las entradas enviadas son las
+ * de la caché de /map-data: no se construye nada por sesión salvo la lista.
+ */
+@Component
+public class ViewportSubscriptions {
+
+    public static final String DESTINATION = "/queue/viewport";
+
+    private final RealTimeParkingUpdater updater;
+    private final CarparkIdDictionary idDictionary;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final double cellDegrees;
+    private final int maxCells;
+
+    private final Map<String, Viewport> viewports = new HashMap<>();
+    private final Map<Long, Set<Viewport>> byCell = new HashMap<>();
+    private final Set<Viewport> wide = new HashSet<>();
+
+    private CarparkGeoIndex index;
+    private List<CarparkMetadata> indexedMetadata;
+
+    public ViewportSubscriptions(
+            RealTimeParkingUpdater updater,
+            CarparkIdDictionary idDictionary,
+            SimpMessagingTemplate messagingTemplate,
+            @Value("${parking.viewport.cell-degrees:0.01}") double cellDegrees,
+            @Value("${parking.viewport.max-cells:400}") int maxCells
+    ) {
+        this.updater = updater;
+        this.idDictionary = idDictionary;
+        this.messagingTemplate = messagingTemplate;
+        this.cellDegrees = cellDegrees;
+        this.maxCells = Math.max(1, maxCells);
+    }
+
+    @PostConstruct
+    void subscribeToFeed() {
+        updater.addAvailabilityListener(this::onAvailabilityChanged);
+    }
+
+    /**
+     * Registra o sustituye el rectángulo de la sesión y le envía los carparks que contiene.
+     * Va bajo el mismo cerrojo que la difusión de cambios para que la foto no adelante a un cambio.
+     */
+    public synchronized void update(String sessionId, CarparkGeoIndex.Box box) {
+        CarparkGeoIndex current = currentIndex();
+        remove(sessionId);
+        Viewport viewport = new Viewport(sessionId, box, current.cellsOf(box, maxCells));
+        viewports.put(sessionId, viewport);
+        if (viewport.cells == null) {
+            wide.add(viewport);
+        } else {
+            for (long cell : viewport.cells) {
+                byCell.computeIfAbsent(cell, key -> new HashSet<>()).add(viewport);
+            }
+        }
+
+        int[] ids = current.query(box);
+        List<Map<String, Object>> carparks = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Map<String, Object> entry = updater.getMapData(id);
+            if (entry != null) {
+                carparks.add(entry);
+            }
+        }
+        send(sessionId, "snapshot", carparks);
+    }
+
+    public synchronized void remove(String sessionId) {
+        Viewport viewport = viewports.remove(sessionId);
+        if (viewport == null) {
+            return;
+        }
+        if (viewport.cells == null) {
+            wide.remove(viewport);
+            return;
+        }
+        for (long cell : viewport.cells) {
+            Set<Viewport> sessions = byCell.get(cell);
+            if (sessions != null && sessions.remove(viewport) && sessions.isEmpty()) {
+                byCell.remove(cell);
+            }
+        }
+    }
+
+    @EventListener
+    public void onSessionDisconnect(SessionDisconnectEvent event) {
+        remove(event.getSessionId());
+    }
+
+    private synchronized void onAvailabilityChanged(int[] ids) {
+        if (viewports.isEmpty()) {
+            return;
+        }
+        CarparkGeoIndex current = currentIndex();
+        Map<Viewport, List<Map<String, Object>>> pending = new LinkedHashMap<>();
+        for (int id : ids) {
+            if (!current.contains(id)) {
+                continue;
+            }
+            Map<String, Object> entry = updater.getMapData(id);
+            if (entry == null) {
+                continue;
+            }
+            double latitude = current.latitude(id);
+            double longitude = current.longitude(id);
+            Set<Viewport> inCell = byCell.get(current.cellOf(id));
+            if (inCell != null) {
+                collect(inCell, latitude, longitude, entry, pending);
+            }
+            collect(wide, latitude, longitude, entry, pending);
+        }
+        pending.forEach((viewport, carparks) -> send(viewport.sessionId, "changes", carparks));
+    }
+
+    private static void collect(Set<Viewport> candidates, double latitude, double longitude,
+                                Map<String, Object> entry, Map<Viewport, List<Map<String, Object>>> pending) {
+        for (Viewport viewport : candidates) {
+            if (viewport.box.contains(latitude, longitude)) {
+                pending.computeIfAbsent(viewport, key -> new ArrayList<>()).add(entry);
+            }
+        }
+    }
+
+    /**
+     * El índice se reconstruye solo cuando se cargan metadatos nuevos. Las claves de celda solo
+     * dependen de las coordenadas, así que los rectángulos ya registrados siguen siendo válidos.
+     */
+    private CarparkGeoIndex currentIndex() {
+        List<CarparkMetadata> metadata = updater.getAllMetadata();
+        if (index == null || metadata != indexedMetadata) {
+            index = CarparkGeoIndex.build(metadata, idDictionary, cellDegrees);
+            indexedMetadata = metadata;
+        }
+        return index;
+    }
+
+    private void send(String sessionId, String type, List<Map<String, Object>> carparks) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("type", type);
+        message.put("carparks", carparks);
+        messagingTemplate.convertAndSendToUser(sessionId, DESTINATION, message, sessionHeaders(sessionId));
+    }
+
+    /**
+     * Las sesiones son anónimas: con el id de sesión como usuario y en la cabecera, el resolvedor
+     * de destinos {@code /user} entrega solo a esa sesión.
+     */
+    private static MessageHeaders sessionHeaders(String sessionId) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return accessor.getMessageHeaders();
+    }
+
+    public synchronized ViewportStats getStats() {
+        return new ViewportStats(viewports.size(), wide.size(), byCell.size(),
+                index == null ? 0 : index.size());
+    }
+
+    public record ViewportStats(int sessions, int wideSessions, int indexedCells, int indexedCarparks) {}
+
+    private static final class Viewport {
+
+        private final String sessionId;
+        private final CarparkGeoIndex.Box box;
+        // Celdas que cubre, o null si son demasiadas
+        private final long[] cells;
+
+        private Viewport(String sessionId, CarparkGeoIndex.Box box, long[] cells) {
+            this.sessionId = sessionId;
+            this.box = box;
+            this.cells = cells;
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package smartparking.web;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.util.Map;
 
 /**
  * Configuración de WebSocket para notificaciones en tiempo real.
@@ -13,10 +22,31 @@ import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerCo
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
+    private final DeltaProtocolNegotiator deltaProtocolNegotiator;
+    private final StompSubscriptionTracker subscriptionTracker;
+    private final SessionOutboundQueues outboundQueues;
+    private final int outboundThreads;
+    private final int messageSizeLimit;
+
+    public WebSocketConfig(DeltaProtocolNegotiator deltaProtocolNegotiator,
+                           StompSubscriptionTracker subscriptionTracker,
+                           SessionOutboundQueues outboundQueues,
+                           @Value("${parking.websocket.outbound-threads:4}") int outboundThreads,
+                           @Value("${parking.websocket.message-size-limit-kb:64}") int messageSizeLimitKb) {
+        this.deltaProtocolNegotiator = deltaProtocolNegotiator;
+        this.subscriptionTracker = subscriptionTracker;
+        this.outboundQueues = outboundQueues;
+        this.outboundThreads = Math.max(1, outboundThreads);
+        this.messageSizeLimit = Math.max(1, messageSizeLimitKb) * 1024;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
-        config.enableSimpleBroker("/topic");
+        // /queue para los envíos a una sola sesión (/user/queue/viewport)
+        config.enableSimpleBroker("/topic", "/queue");
         config.setApplicationDestinationPrefixes("/app");
+        // Una foto de viewport no debe adelantar a los cambios publicados antes que ella
+        config.setPreservePublishOrder(true);
     }
 
     @Override
@@ -24,6 +54,46 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         registry.addEndpoint("/ws-parking")
                 .setAllowedOriginPatterns("*") // Usar patterns para Spring Boot 3
                 .withSockJS();
+
+        // WebSocket sin SockJS: admite frames binarios (delta-format: binary)
+        registry.addEndpoint("/ws-parking-native")
+                .setAllowedOriginPatterns("*")
+                .addInterceptors(new NativeTransportMarker());
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        // El negociador reescribe destinos antes de que se cuenten las suscripciones
+        registration.interceptors(deltaProtocolNegotiator, subscriptionTracker);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        // Solo reparte a las colas de sesión, que no bloquean: basta un pool pequeño
+        registration.taskExecutor()
+                .corePoolSize(outboundThreads)
+                .maxPoolSize(outboundThreads);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setMessageSizeLimit(messageSizeLimit)
+                .addDecoratorFactory(outboundQueues);
+    }
+
+    private static final class NativeTransportMarker implements HandshakeInterceptor {
+
+        @Override
+        public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                       WebSocketHandler wsHandler, Map<String, Object> attributes) {
+            attributes.put(DeltaProtocolNegotiator.NATIVE_TRANSPORT_ATTRIBUTE, true);
+            return true;
+        }
+
+        @Override
+        public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Exception exception) {
+        }
     }
 }
 
@@ -9,6 +9,19 @@ let stompClient = null;
 let spots = [];
 let parkingChart = null;
 let historyChart = null;
+let lastDeltaSeq = null;
+let deltaStream = null;
+let resyncPending = false;
+let resyncSubscription = null;
+let resyncTimer = null;
+let bufferedDeltas = [];
+let historyPoints = [];
+let historyCarparkId = null;
+let activityEvents = [];
+const MAX_ACTIVITY_EVENTS = 30;
+// Si la respuesta del resync no llega se vuelve a pedir; mientras, se guardan como mucho los últimos frames
+const RESYNC_TIMEOUT_MS = 5000;
+const MAX_BUFFERED_DELTAS = 256;
 
 // Inicializar la aplicacion
 document.addEventListener('DOMContentLoaded', () => {
@@ -22,10 +35,7 @@ document.addEventListener('DOMContentLoaded', () => {
     loadHealth();
     loadEvents();
     loadSidebarUsers();
-    setInterval(loadHealth, 30000);
-    setInterval(loadEvents, 20000);
-    setInterval(loadSidebarUsers, 30000); // Refresh user list periodically
-    setInterval(loadHistory, 60000); // Actualizar historial cada minuto
+    // Salud, actividad, historial y usuarios llegan después por WebSocket (ver connectWebSocket)
 });
 
 function initChart() {
@@ -127,14 +137,26 @@ async function loadHistory() {
     try {
         const response = await fetch(`${API_URL}/history`);
         if (response.ok) {
-            const history = await response.json();
-            updateHistoryChart(history);
+            historyCarparkId = response.headers.get('X-Carpark-Id');
+            historyPoints = await response.json();
+            updateHistoryChart(historyPoints);
         }
     } catch (error) {
         console.error('Error cargando historial:', error);
     }
 }
 
+// Punto nuevo de /topic/parking-history: solo del carpark cargado y dentro de la ventana de /history
+function appendHistoryPoint(point) {
+    if (historyCarparkId == null || point.carparkId !== historyCarparkId) {
+        return;
+    }
+    const windowStart = new Date(point.windowStart).getTime();
+    historyPoints.push(point);
+    historyPoints = historyPoints.filter(h => new Date(h.timestamp).getTime() >= windowStart);
+    updateHistoryChart(historyPoints);
+}
+
 function updateHistoryChart(history) {
     if (!historyChart) return;
 
@@ -308,9 +330,9 @@ function createSpotElement(spot) {
     return div;
 }
 
-// Actualizar una plaza especifica en el grid
-function updateSpotInGrid(spotId, newStatus) {
-    const spotElement = document.querySelector(`[data-spot-id="${spotId}"]`);
+// Actualizar una plaza especifica en el grid (el elemento se puede pasar ya resuelto)
+function updateSpotInGrid(spotId, newStatus, element) {
+    const spotElement = element || document.querySelector(`[data-spot-id="${spotId}"]`);
     if (spotElement) {
         spotElement.classList.remove('FREE', 'OCCUPIED', 'OUT_OF_SERVICE');
         spotElement.classList.add(newStatus);
@@ -402,7 +424,6 @@ async function updateSpotStatus() {
 
             // addLogEntry(`Plaza ${spotId} cambiada a ${statusText[status]}`, status);
             loadStatistics();
-            loadEvents();
         } else {
             console.error('Error al actualizar estado');
             alert('Error al actualizar el estado de la plaza');
@@ -427,6 +448,22 @@ function connectWebSocket() {
             const update = JSON.parse(message.body);
             handleParkingUpdate(update);
         });
+        // El servidor publica cuando algo cambia; una sola serialización para todas las pestañas
+        stompClient.subscribe('/topic/parking-health', (message) => {
+            updateHealthUI(JSON.parse(message.body));
+        });
+        stompClient.subscribe('/topic/parking-activity', (message) => {
+            prependActivity(JSON.parse(message.body));
+        });
+        stompClient.subscribe('/topic/parking-history', (message) => {
+            appendHistoryPoint(JSON.parse(message.body));
+        });
+        stompClient.subscribe('/topic/kdd/users', (message) => {
+            renderSidebarUsers(JSON.parse(message.body));
+        });
+        // Tras (re)conectar se recupera lo perdido en lugar de recargar todo por REST
+        cancelResync();
+        requestResync();
 
         // KDD Notifications
         if (currentKddUser) {
@@ -437,23 +474,159 @@ function connectWebSocket() {
         console.error('Error de WebSocket:', error);
         updateConnectionStatus(false);
         showToast('Desconectado', 'Se perdió la conexión con el servidor', 'error');
-        setTimeout(connectWebSocket, 5000);
+        setTimeout(() => {
+            // Lo publicado mientras no había conexión se recupera una vez por REST
+            loadHealth();
+            loadEvents();
+            connectWebSocket();
+        }, 5000);
     });
 }
 
-// Manejar actualizaciones del parking via WebSocket
+// Manejar actualizaciones del parking via WebSocket (un frame por tick con pares [spotId, status])
 function handleParkingUpdate(update) {
     console.log('Actualizacion recibida:', update);
-    updateSpotInGrid(update.spotId, update.status);
+    if (resyncPending) {
+        bufferDelta(update);
+        return;
+    }
+    // Otro stream (servidor reiniciado) o un hueco en la secuencia: se piden solo los frames perdidos
+    if (update.seq != null && (update.stream !== deltaStream
+            || (lastDeltaSeq != null && update.seq > lastDeltaSeq + 1))) {
+        bufferDelta(update);
+        requestResync();
+        return;
+    }
+    if (update.seq != null && lastDeltaSeq != null && update.seq <= lastDeltaSeq) {
+        return;
+    }
+    applyDeltaFrame(update, false);
+}
+
+// Los más antiguos que se descartan dejan un hueco que el siguiente resync recupera
+function bufferDelta(update) {
+    bufferedDeltas.push(update);
+    if (bufferedDeltas.length > MAX_BUFFERED_DELTAS) {
+        bufferedDeltas.splice(0, bufferedDeltas.length - MAX_BUFFERED_DELTAS);
+    }
+}
+
+function applyDeltaFrame(update, replayed) {
+    if (update.seq != null) {
+        lastDeltaSeq = update.seq;
+    }
+    const changes = (update.changes || [update]).map(change =>
+        Array.isArray(change) ? { spotId: change[0], status: change[1] } : change);
+    changes.forEach(change => updateSpotInGrid(change.spotId, change.status));
+
+    // Los contadores vienen en el propio frame
+    if (update.counts) {
+        updateStatistics(update.counts);
+    } else {
+        loadStatistics();
+    }
+    if (replayed) {
+        return;
+    }
 
     const statusText = {
         'FREE': 'Libre',
         'OCCUPIED': 'Ocupada',
         'OUT_OF_SERVICE': 'Mantenimiento'
     };
-    addLogEntry(`Plaza ${update.spotId} -> ${statusText[update.status]}`, update.status, update.timestamp);
-    loadStatistics();
-    loadEvents();
+    if (changes.length === 1) {
+        const change = changes[0];
+        addLogEntry(`Plaza ${change.spotId} -> ${statusText[change.status]}`, change.status, update.timestamp);
+    } else if (changes.length > 1) {
+        addLogEntry(`${changes.length} plazas actualizadas`, changes[changes.length - 1].status, update.timestamp);
+    }
+    // El registro completo llega por /topic/parking-activity; aquí no se consulta /events
+}
+
+// Pide al servidor lo que falta desde la última secuencia aplicada (o una foto si ya no lo tiene)
+function requestResync() {
+    if (resyncPending || !stompClient) {
+        return;
+    }
+    resyncPending = true;
+    const headers = {};
+    if (deltaStream != null && lastDeltaSeq != null) {
+        headers.stream = deltaStream;
+        headers.since = String(lastDeltaSeq);
+    }
+    const subscription = stompClient.subscribe('/app/parking-updates/resync', (message) => {
+        if (subscription !== resyncSubscription) {
+            return;
+        }
+        cancelResync();
+        applyResync(JSON.parse(message.body));
+    }, headers);
+    resyncSubscription = subscription;
+    // Sin respuesta (error del servidor, suscripción perdida) se abandona y se pide de nuevo
+    resyncTimer = setTimeout(() => {
+        console.warn('Resync sin respuesta, reintentando');
+        cancelResync();
+        requestResync();
+    }, RESYNC_TIMEOUT_MS);
+}
+
+function cancelResync() {
+    clearTimeout(resyncTimer);
+    resyncTimer = null;
+    if (resyncSubscription) {
+        try {
+            resyncSubscription.unsubscribe();
+        } catch (e) {
+            // La conexión anterior ya está cerrada
+        }
+        resyncSubscription = null;
+    }
+    resyncPending = false;
+}
+
+function applyResync(reply) {
+    deltaStream = reply.stream;
+    if (reply.type === 'replay') {
+        reply.frames.forEach(frame => applyDeltaFrame(frame, true));
+        if (reply.frames.length > 0) {
+            addLogEntry(`${reply.frames.length} actualizaciones recuperadas`, 'FREE');
+        }
+    } else {
+        applyDeltaSnapshot(reply);
+    }
+    lastDeltaSeq = reply.seq;
+
+    // Frames recibidos mientras tanto: solo los posteriores a la resincronización
+    const pending = bufferedDeltas.filter(frame => frame.stream === deltaStream && frame.seq > lastDeltaSeq)
+        .sort((a, b) => a.seq - b.seq);
+    bufferedDeltas = [];
+    pending.forEach(frame => handleParkingUpdate(frame));
+}
+
+// Foto compacta: un carácter por plaza con el ordinal del estado
+function applyDeltaSnapshot(snapshot) {
+    const statusByOrdinal = ['FREE', 'OCCUPIED', 'OUT_OF_SERVICE'];
+    const statuses = snapshot.statuses;
+    if (statuses.length !== spots.length) {
+        // El parking ha cambiado de tamaño (otro parking seleccionado o servidor reiniciado):
+        // se rehace el grid desde la foto en lugar de recolorear un grid obsoleto
+        spots = Array.from(statuses, (c, i) => ({ id: i + 1, status: statusByOrdinal[c.charCodeAt(0) - 48] }));
+        renderParkingGrid(spots);
+        populateSpotSelector(spots);
+    } else {
+        const elements = new Map();
+        document.querySelectorAll('#parking-grid [data-spot-id]')
+            .forEach(el => elements.set(Number(el.dataset.spotId), el));
+        for (let i = 0; i < statuses.length; i++) {
+            const status = statusByOrdinal[statuses.charCodeAt(i) - 48];
+            const spotElement = elements.get(i + 1);
+            if (spotElement && !spotElement.classList.contains(status)) {
+                updateSpotInGrid(i + 1, status, spotElement);
+            }
+        }
+    }
+    // Después del grid: con el tamaño ya al día no se dispara la recarga por REST
+    updateStatistics(snapshot.counts);
 }
 
 // Cargar solo las estadisticas
@@ -514,13 +687,19 @@ function updateHealthUI(health) {
 async function loadEvents() {
     try {
         const response = await fetch(`${EVENTS_URL}?limit=30`);
-        const events = await response.json();
-        renderEventLog(events);
+        activityEvents = await response.json();
+        renderEventLog(activityEvents);
     } catch (error) {
         console.error('No se pudo obtener eventos:', error);
     }
 }
 
+// Eventos nuevos (del más reciente al más antiguo) recibidos por /topic/parking-activity
+function prependActivity(events) {
+    activityEvents = events.concat(activityEvents).slice(0, MAX_ACTIVITY_EVENTS);
+    renderEventLog(activityEvents);
+}
+
 function renderEventLog(events) {
     const log = document.getElementById('activity-log');
     log.innerHTML = '';
@@ -843,34 +1022,36 @@ document.querySelectorAll('.sidebar-nav li').forEach(li => {
 function loadSidebarUsers() {
     fetch('/api/kdd/users')
         .then(res => res.json())
-        .then(users => {
-            const container = document.getElementById('sidebar-user-list');
-            if (!container) return;
-            
-            container.innerHTML = '';
-            users.forEach(user => {
-                const li = document.createElement('li');
-                li.style.padding = '8px 20px';
-                li.style.fontSize = '0.9rem';
-                
-                const a = document.createElement('a');
-                a.href = `/usuario/${user.name}`;
-                a.target = '_blank'; // Open in new tab or remove to navigate
-                a.style.color = 'rgba(255,255,255,0.7)';
-                a.style.textDecoration = 'none';
-                a.style.display = 'flex';
-                a.style.alignItems = 'center';
-                a.style.gap = '10px';
-                a.innerHTML = `<i class="fa-solid fa-user-circle"></i> ${user.name}`;
-                
-                // Hover effect
-                a.onmouseover = () => a.style.color = '#fff';
-                a.onmouseout = () => a.style.color = 'rgba(255,255,255,0.7)';
-
-                li.appendChild(a);
-                container.appendChild(li);
-            });
-        })
+        .then(renderSidebarUsers)
         .catch(err => console.error('Error loading users:', err));
 }
 
+function renderSidebarUsers(users) {
+    const container = document.getElementById('sidebar-user-list');
+    if (!container) return;
+    
+    container.innerHTML = '';
+    users.forEach(user => {
+        const li = document.createElement('li');
+        li.style.padding = '8px 20px';
+        li.style.fontSize = '0.9rem';
+        
+        const a = document.createElement('a');
+        a.href = `/usuario/${user.name}`;
+        a.target = '_blank'; // Open in new tab or remove to navigate
+        a.style.color = 'rgba(255,255,255,0.7)';
+        a.style.textDecoration = 'none';
+        a.style.display = 'flex';
+        a.style.alignItems = 'center';
+        a.style.gap = '10px';
+        a.innerHTML = `<i class="fa-solid fa-user-circle"></i> ${user.name}`;
+        
+        // Hover effect
+        a.onmouseover = () => a.style.color = '#fff';
+        a.onmouseout = () => a.style.color = 'rgba(255,255,255,0.7)';
+
+        li.appendChild(a);
+        container.appendChild(li);
+    });
+}
+
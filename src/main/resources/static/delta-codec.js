@@ -0,0 +1,59 @@
+// Decodificador de referencia del delta binario de /ws-parking-native (CONNECT con la cabecera
+// "delta-format: binary"). Ninguna página lo carga: el dashboard usa SockJS, que solo transporta JSON.
+// Es para clientes nativos que quieran el formato binario y sirve de especificación ejecutable del
+// formato de DeltaFrameCodec.
+//
+// Devuelve el mismo objeto que el frame JSON de /topic/parking-updates, con "stream" incluido. El
+// timestamp tiene el mismo formato (ISO_LOCAL_DATE_TIME, sin zona) en la hora local del cliente, que es
+// la del servidor cuando ambos están en la misma zona, como en el JSON. Si "seq"
+// no sigue a la última aplicada (o tras reconectar) se pide /app/parking-updates/resync con las cabeceras
+// "stream" y "since", igual que con JSON. La respuesta del resync siempre es JSON.
+const DELTA_STATUSES = ['FREE', 'OCCUPIED', 'OUT_OF_SERVICE'];
+
+// Como DateTimeFormatter.ISO_LOCAL_DATE_TIME: segundos siempre y milisegundos sin ceros finales
+function formatLocalDateTime(millis) {
+    const date = new Date(millis);
+    const pad = (value, length = 2) => String(value).padStart(length, '0');
+    const fraction = date.getMilliseconds() === 0 ? ''
+        : '.' + pad(date.getMilliseconds(), 3).replace(/0+$/, '');
+    return `${date.getFullYear()}-${pad(date.getMonth() + 1)}-${pad(date.getDate())}`
+        + `T${pad(date.getHours())}:${pad(date.getMinutes())}:${pad(date.getSeconds())}${fraction}`;
+}
+
+function decodeParkingDelta(buffer) {
+    const bytes = new Uint8Array(buffer);
+    let position = 0;
+
+    // Varint LEB128; con aritmética normal para valores por encima de 2^31 (timestamps)
+    const varint = () => {
+        let value = 0;
+        let factor = 1;
+        let b;
+        do {
+            b = bytes[position++];
+            value += (b & 0x7f) * factor;
+            factor *= 128;
+        } while (b & 0x80);
+        return value;
+    };
+
+    const version = bytes[position++];
+    if (version !== 2) {
+        throw new Error(`Versión de delta binario no soportada: ${version}`);
+    }
+    const streamLength = varint();
+    const stream = new TextDecoder().decode(bytes.subarray(position, position + streamLength));
+    position += streamLength;
+    const seq = varint();
+    const timestamp = formatLocalDateTime(varint());
+    const counts = { total: varint(), free: varint(), occupied: varint(), outOfService: varint() };
+    const n = varint();
+    const changes = new Array(n);
+    let spotId = 0;
+    for (let i = 0; i < n; i++) {
+        const entry = varint();
+        spotId += Math.floor(entry / 4);
+        changes[i] = [spotId, DELTA_STATUSES[entry & 3]];
+    }
+    return { stream, seq, timestamp, changes, counts };
+}